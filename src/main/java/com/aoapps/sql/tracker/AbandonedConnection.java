@@ -0,0 +1,175 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes the connection wrapped by a tracker that becomes unreachable without being closed.  Only references the
+ * tracker weakly, so an abandoned tracker may be garbage collected.
+ *
+ * <p>Closing the wrapped connection releases its statements and result sets in the driver.  The trackers of these
+ * objects are unreachable along with the connection tracker, so the connection counts its tracked objects per call
+ * site, which are counted as {@linkplain AllocationCallSite#getLeaked() leaked} and closed along with the
+ * connection.</p>
+ *
+ * @see  DriverTracker#setCleanAbandoned(boolean)
+ *
+ * @author  AO Industries, Inc.
+ */
+final class AbandonedConnection implements Runnable {
+
+  private static final Logger logger = Logger.getLogger(AbandonedConnection.class.getName());
+
+  /**
+   * Shared by all drivers, with its thread only started once the first connection is registered.
+   */
+  private static final Cleaner cleaner = Cleaner.create();
+
+  /**
+   * Registers a new connection tracker to be closed when it becomes unreachable.
+   */
+  static AbandonedConnection register(DriverTracker driver, Connection wrapped, ConnectionTrackerImpl tracker) {
+    AbandonedConnection abandoned = new AbandonedConnection(driver, wrapped, tracker);
+    abandoned.cleanable = cleaner.register(tracker, abandoned);
+    return abandoned;
+  }
+
+  private final DriverTracker driver;
+  private final Connection wrapped;
+  private final WeakReference<ConnectionTrackerImpl> tracker;
+  private final AllocationCallSite allocationCallSite;
+  private final long allocationTime;
+
+  /**
+   * The number of objects tracked by the connection per call site.
+   */
+  private final ConcurrentMap<AllocationCallSite, Integer> openCallSites;
+
+  private volatile Cleaner.Cleanable cleanable;
+
+  private AbandonedConnection(DriverTracker driver, Connection wrapped, ConnectionTrackerImpl tracker) {
+    this.driver = driver;
+    this.wrapped = wrapped;
+    this.tracker = new WeakReference<>(tracker);
+    this.allocationCallSite = tracker.getAllocationCallSite();
+    this.allocationTime = tracker.getAllocationTime();
+    this.openCallSites = tracker.countOpenCallSites();
+  }
+
+  /**
+   * Gets the tracker or {@code null} when it has become unreachable.
+   */
+  ConnectionTrackerImpl getTracker() {
+    return tracker.get();
+  }
+
+  /**
+   * Checks if this is for the given tracker.
+   */
+  boolean isTracker(ConnectionTrackerImpl t) {
+    return tracker.get() == t;
+  }
+
+  /**
+   * Unregisters from the cleaner once the tracker has been closed and this removed from the driver.
+   */
+  void clean() {
+    cleanable.clean();
+  }
+
+  /**
+   * Called by the cleaner when the tracker has become unreachable, or by {@link #clean()}.  Does nothing when the
+   * tracker has been closed, since this has already been removed from the driver.
+   */
+  @Override
+  public void run() {
+    if (driver.removeAbandonable(wrapped, this)) {
+      closeAbandoned();
+    }
+  }
+
+  /**
+   * Closes the wrapped connection, counted as {@linkplain AllocationCallSite#getLeaked() leaked} along with the
+   * objects it still tracked.  The age of these objects is measured from the allocation of the connection, since their
+   * trackers are no longer reachable.
+   */
+  private void closeAbandoned() {
+    AllocationStacktraces.leaked(allocationCallSite);
+    AllocationStacktraces.closed(allocationCallSite, allocationTime);
+    boolean warning = logger.isLoggable(Level.WARNING);
+    if (warning) {
+      logger.log(
+          Level.WARNING,
+          "Closing connection that became unreachable without being closed: " + allocationCallSite,
+          allocationCallSite.newStacktrace());
+    }
+    for (Map.Entry<AllocationCallSite, Integer> entry : openCallSites.entrySet()) {
+      AllocationCallSite site = entry.getKey();
+      int open = entry.getValue();
+      for (int i = 0; i < open; i++) {
+        AllocationStacktraces.leaked(site);
+        AllocationStacktraces.closed(site, allocationTime);
+      }
+      if (warning) {
+        logger.log(
+            Level.WARNING,
+            "Closing " + open + " objects of connection that became unreachable without being closed: " + site,
+            site.newStacktrace());
+      }
+    }
+    openCallSites.clear();
+    try {
+      wrapped.close();
+    } catch (SQLException | RuntimeException e) {
+      logger.log(Level.WARNING, "Error closing abandoned connection", e);
+    }
+  }
+
+  /**
+   * Closes the tracker when still reachable, or the wrapped connection otherwise.  Called once this has been removed
+   * from the driver when deregistered.
+   */
+  void close() throws SQLException {
+    ConnectionTrackerImpl t = tracker.get();
+    if (t != null) {
+      AllocationStacktraces.leaked(allocationCallSite);
+      try {
+        t.close();
+      } finally {
+        clean();
+      }
+    } else {
+      closeAbandoned();
+    }
+  }
+}
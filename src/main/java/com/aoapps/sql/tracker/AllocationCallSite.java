@@ -0,0 +1,176 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The number of objects opened, closed, and leaked per allocation call site and {@linkplain TrackedType type}.
+ *
+ * <p>Objects are counted with the call site of their {@linkplain AllocationStacktraces sampled} stack trace.  Objects
+ * without a stack trace are counted together in a single call site per type that has an empty stack trace.  Objects
+ * beyond the bound on the number of call sites keep their stack trace in a call site of their own, which is not
+ * interned and shares the counts of the call site of its type.</p>
+ *
+ * @see  AllocationStacktraces#getCallSites()
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class AllocationCallSite {
+
+  private final int id;
+  private final TrackedType type;
+  private final StackTraceElement[] stackTrace;
+
+  /**
+   * The call site that is interned, which is this call site unless beyond the bound on the number of call sites.
+   */
+  private final AllocationCallSite interned;
+
+  private final LongAdder opened;
+  private final LongAdder closed;
+  private final LongAdder leaked;
+
+  AllocationCallSite(int id, TrackedType type, StackTraceElement[] stackTrace) {
+    this.id = id;
+    this.type = type;
+    this.stackTrace = stackTrace;
+    this.interned = this;
+    this.opened = new LongAdder();
+    this.closed = new LongAdder();
+    this.leaked = new LongAdder();
+  }
+
+  /**
+   * Creates a call site of a single object that is not interned, which shares the identifier and counts of the call site
+   * of its type.
+   *
+   * @param  typeSite  The call site of the type for objects without a stack trace
+   */
+  AllocationCallSite(AllocationCallSite typeSite, StackTraceElement[] stackTrace) {
+    this.id = typeSite.id;
+    this.type = typeSite.type;
+    this.stackTrace = stackTrace;
+    this.interned = typeSite;
+    this.opened = typeSite.opened;
+    this.closed = typeSite.closed;
+    this.leaked = typeSite.leaked;
+  }
+
+  @Override
+  public String toString() {
+    return type + (stackTrace.length == 0 ? "" : (" at " + stackTrace[0]))
+        + ": opened=" + getOpened() + ", closed=" + getClosed() + ", leaked=" + getLeaked();
+  }
+
+  /**
+   * Gets the identifier of this call site, unique within the JVM.
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Gets the type of objects allocated at this call site.
+   */
+  public TrackedType getType() {
+    return type;
+  }
+
+  /**
+   * Gets the stack trace of this call site.
+   *
+   * @return  A copy of the stack trace, which is empty for objects without a stack trace
+   */
+  public StackTraceElement[] getStackTrace() {
+    return stackTrace.clone();
+  }
+
+  /**
+   * Gets the number of objects opened at this call site.
+   */
+  public long getOpened() {
+    return opened.sum();
+  }
+
+  /**
+   * Gets the number of objects opened at this call site that have been closed, including those leaked.
+   */
+  public long getClosed() {
+    return closed.sum();
+  }
+
+  /**
+   * Gets the number of objects opened at this call site that were still open when their connection was closed or
+   * their driver deregistered, and were closed by the tracker.
+   */
+  public long getLeaked() {
+    return leaked.sum();
+  }
+
+  /**
+   * Gets the number of objects opened at this call site that have not yet been closed.
+   * Objects discarded by {@link java.sql.Connection#abort(java.util.concurrent.Executor)} remain open until closed.
+   */
+  public long getOpen() {
+    // Read closed first so concurrent closes cannot make this negative
+    long c = closed.sum();
+    return opened.sum() - c;
+  }
+
+  /**
+   * Gets the call site that is interned, which is the call site of the type when this call site is beyond the bound on
+   * the number of call sites.
+   */
+  AllocationCallSite getInterned() {
+    return interned;
+  }
+
+  /**
+   * Creates a new {@link Exception} with the stack trace of this call site.
+   *
+   * @return  The stack trace or {@code null} for objects without a stack trace
+   */
+  Exception newStacktrace() {
+    if (stackTrace.length == 0) {
+      return null;
+    }
+    Exception stacktrace = new Exception("Stack trace at allocation");
+    stacktrace.setStackTrace(stackTrace.clone());
+    return stacktrace;
+  }
+
+  void opened() {
+    opened.increment();
+  }
+
+  void closed() {
+    closed.increment();
+  }
+
+  void leaked() {
+    leaked.increment();
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2022  AO Industries, Inc.
+ * Copyright (C) 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,7 +27,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Tracks the stack trace at allocation time when logging at {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL} or higher.
+ * Tracks the stack trace at allocation time when logging at {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL} or higher,
+ * or when sampled.
+ *
+ * @see  AllocationStacktraces
  *
  * @author  AO Industries, Inc.
  */
@@ -39,10 +42,21 @@ interface AllocationStacktraceProvider {
   Level ALLOCATION_STACKTRACE_LOG_LEVEL = Level.FINER;
 
   /**
-   * Gets the stacktrace at allocation time or {@code null} if not available due to logging level.
+   * Gets the stacktrace at allocation time or {@code null} if not available due to logging level and sampling.
+   * The stack trace is created from the interned call site on each call.
    */
   Exception getAllocationStacktrace();
 
+  /**
+   * Gets the call site where allocated, which counts the objects opened, closed, and leaked.
+   */
+  AllocationCallSite getAllocationCallSite();
+
+  /**
+   * Gets the time allocated, in the same time source as {@link System#nanoTime()}.
+   */
+  long getAllocationTime();
+
   /**
    * Gets the logger to be used for allocation information.
    */
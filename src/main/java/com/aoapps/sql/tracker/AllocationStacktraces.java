@@ -0,0 +1,377 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import static com.aoapps.sql.tracker.AllocationStacktraceProvider.ALLOCATION_STACKTRACE_LOG_LEVEL;
+
+import java.lang.StackWalker.StackFrame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Captures the stack trace at allocation time of tracked objects.
+ *
+ * <p>When logging at {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL} or higher, the stack trace is
+ * captured for every tracked object.  Otherwise, a stack trace is captured for a random sample of tracked objects,
+ * which allows leaving leak attribution enabled in production at a bounded cost.</p>
+ *
+ * <p>Sampling is disabled by default.  The sample rate of all types defaults to the system property
+ * <code>com.aoapps.sql.tracker.AllocationStacktraces.sampleRate</code>, and may be changed at any time.</p>
+ *
+ * <p>Stack traces are captured with a {@link StackWalker}, skipping the frames of the tracker and wrapper
+ * implementations and of the JDK, and limited to a number of frames that defaults to the system property
+ * <code>com.aoapps.sql.tracker.AllocationStacktraces.frameLimit</code>.  The frame limit applies to sampled stack
+ * traces only: when logging at {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL}, all frames are
+ * captured so that logged leaks show the full stack trace.  Identical call sites are interned into a
+ * global table, so each tracked object retains only a reference to its shared call site.  The {@link Exception} is
+ * created only when the stack trace is requested.</p>
+ *
+ * <p>The number of objects opened, closed, and leaked is counted per call site and type, in a table bounded by
+ * {@link #MAX_CALL_SITES}.  Once the table is full, a warning is logged once, and objects allocated at new call sites
+ * keep their stack trace in a call site of their own, counted with the call site of their type.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class AllocationStacktraces {
+
+  /** Make no instances. */
+  private AllocationStacktraces() {
+    throw new AssertionError();
+  }
+
+  private static final Logger logger = Logger.getLogger(AllocationStacktraces.class.getName());
+
+  /**
+   * The system property that sets the default sample rate of all types.
+   */
+  public static final String SAMPLE_RATE_PROPERTY = AllocationStacktraces.class.getName() + ".sampleRate";
+
+  /**
+   * The sample rate per type, indexed by {@link TrackedType#ordinal()}.
+   */
+  private static final AtomicIntegerArray sampleRates = new AtomicIntegerArray(TrackedType.COUNT);
+
+  /**
+   * The system property that sets the default frame limit.
+   */
+  public static final String FRAME_LIMIT_PROPERTY = AllocationStacktraces.class.getName() + ".frameLimit";
+
+  /**
+   * The default maximum number of frames captured.  Bounded so that allocations reached through different paths
+   * further up the stack, such as different requests of a web application, share the same call site.
+   */
+  public static final int DEFAULT_FRAME_LIMIT = 16;
+
+  /**
+   * The maximum number of frames captured, or {@code 0} for all frames.
+   */
+  private static volatile int frameLimit;
+
+  static {
+    setSampleRate(SystemProperties.getNonNegativeInt(logger, SAMPLE_RATE_PROPERTY, 0));
+    setFrameLimit(SystemProperties.getNonNegativeInt(logger, FRAME_LIMIT_PROPERTY, DEFAULT_FRAME_LIMIT));
+  }
+
+  /**
+   * The system property that sets the maximum number of distinct call sites interned.
+   */
+  public static final String MAX_CALL_SITES_PROPERTY = AllocationStacktraces.class.getName() + ".maxCallSites";
+
+  /**
+   * The maximum number of distinct call sites interned.  Once reached, objects allocated at new call sites keep their
+   * stack trace in a call site of their own, which is counted with the call site of their type.
+   */
+  public static final int MAX_CALL_SITES = SystemProperties.getNonNegativeInt(logger, MAX_CALL_SITES_PROPERTY, 4096);
+
+  /**
+   * Whether {@link #MAX_CALL_SITES} has been reached, checked before interning so that new call sites no longer
+   * contend for {@link #callSitesLock} once full.
+   */
+  private static volatile boolean callSitesFull; // Set while holding callSitesLock
+
+  private static final StackWalker stackWalker = StackWalker.getInstance();
+
+  /**
+   * The interned call sites per type, indexed by {@link TrackedType#ordinal()}.
+   */
+  private static final List<ConcurrentMap<List<StackTraceElement>, AllocationCallSite>> interned;
+
+  /**
+   * All call sites, indexed by identifier, starting with one call site per type for objects without a stack trace.
+   * Replaced on each new call site, so may be read without locking.
+   */
+  private static volatile AllocationCallSite[] callSites; // Replaced while holding callSitesLock
+
+  private static int callSiteCount; // Guarded by callSitesLock
+
+  private static final Object callSitesLock = new Object();
+
+  static {
+    List<ConcurrentMap<List<StackTraceElement>, AllocationCallSite>> newInterned = new ArrayList<>(TrackedType.COUNT);
+    AllocationCallSite[] newCallSites = new AllocationCallSite[TrackedType.COUNT * 2];
+    for (TrackedType type : TrackedType.values()) {
+      newInterned.add(new ConcurrentHashMap<>());
+      int id = type.ordinal();
+      newCallSites[id] = new AllocationCallSite(id, type, new StackTraceElement[0]);
+    }
+    interned = newInterned;
+    callSiteCount = TrackedType.COUNT;
+    callSites = newCallSites;
+  }
+
+  /**
+   * Gets the sample rate of the given type.
+   *
+   * @return  The rate as "1 in N" objects, or {@code 0} when sampling is disabled
+   *
+   * @see  #setSampleRate(com.aoapps.sql.tracker.TrackedType, int)
+   */
+  public static int getSampleRate(TrackedType type) {
+    return sampleRates.get(type.ordinal());
+  }
+
+  /**
+   * Sets the sample rate of the given type, taking effect for objects allocated afterwards.
+   *
+   * @param  rate  Capture the stack trace of 1 in {@code rate} objects, on average.  {@code 1} captures every object,
+   *               and {@code 0} disables sampling.
+   *
+   * @throws  IllegalArgumentException  when {@code rate} is negative
+   */
+  public static void setSampleRate(TrackedType type, int rate) {
+    if (rate < 0) {
+      throw new IllegalArgumentException("rate < 0: " + rate);
+    }
+    sampleRates.set(type.ordinal(), rate);
+  }
+
+  /**
+   * Sets the sample rate of all types.
+   *
+   * @see  #setSampleRate(com.aoapps.sql.tracker.TrackedType, int)
+   */
+  public static void setSampleRate(int rate) {
+    if (rate < 0) {
+      throw new IllegalArgumentException("rate < 0: " + rate);
+    }
+    for (int i = 0; i < TrackedType.COUNT; i++) {
+      sampleRates.set(i, rate);
+    }
+  }
+
+  /**
+   * Gets the maximum number of frames captured for sampled stack traces.  All frames are captured when logging at
+   * {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL}.
+   *
+   * @return  The maximum number of frames or {@code 0} for all frames
+   */
+  public static int getFrameLimit() {
+    return frameLimit;
+  }
+
+  /**
+   * Sets the maximum number of frames captured for sampled stack traces, taking effect for objects allocated
+   * afterwards.
+   *
+   * @param  limit  The maximum number of frames or {@code 0} for all frames.  Capturing all frames makes each distinct
+   *                 path to an allocation a new call site, which may reach {@link #MAX_CALL_SITES} quickly.
+   *
+   * @throws  IllegalArgumentException  when {@code limit} is negative
+   */
+  public static void setFrameLimit(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit < 0: " + limit);
+    }
+    frameLimit = limit;
+  }
+
+  /**
+   * Gets the number of distinct call sites interned so far.
+   */
+  public static int getCallSiteCount() {
+    synchronized (callSitesLock) {
+      return callSiteCount - TrackedType.COUNT;
+    }
+  }
+
+  /**
+   * Gets all call sites with their current counts, including one call site per type for objects without a stack
+   * trace.  Sort by {@link AllocationCallSite#getLeaked()} or {@link AllocationCallSite#getOpen()} to find the worst
+   * offenders.
+   *
+   * @return  A new list of the call sites, in order of first allocation
+   */
+  public static List<AllocationCallSite> getCallSites() {
+    AllocationCallSite[] sites;
+    int count;
+    synchronized (callSitesLock) {
+      sites = callSites;
+      count = callSiteCount;
+    }
+    return new ArrayList<>(Arrays.asList(sites).subList(0, count));
+  }
+
+  /**
+   * Gets all call sites of the given type with their current counts.
+   *
+   * @return  A new list of the call sites, in order of first allocation
+   *
+   * @see  #getCallSites()
+   */
+  public static List<AllocationCallSite> getCallSites(TrackedType type) {
+    List<AllocationCallSite> sites = getCallSites();
+    sites.removeIf(site -> site.getType() != type);
+    return sites;
+  }
+
+  /**
+   * Captures the call site at allocation time, when logging at
+   * {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL} or higher or when sampled, and counts the
+   * object as opened.
+   *
+   * @param  type              The type of object being allocated
+   * @param  allocationLogger  The allocation logger of the object being allocated
+   *
+   * @return  The interned call site, the call site of the type when no stack trace captured, or a call site of the
+   *          object alone once {@link #MAX_CALL_SITES} reached
+   *
+   * @see  #getStacktrace(com.aoapps.sql.tracker.AllocationCallSite)
+   */
+  static AllocationCallSite capture(TrackedType type, Logger allocationLogger) {
+    AllocationCallSite site = callSites[type.ordinal()];
+    boolean logging = allocationLogger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL);
+    if (logging || isSampled(sampleRates.get(type.ordinal()))) {
+      int limit = logging ? 0 : frameLimit;
+      List<StackTraceElement> frames = stackWalker.walk(s -> {
+        Stream<StackFrame> callerFrames = s.dropWhile(AllocationStacktraces::isImplementation);
+        if (limit != 0) {
+          callerFrames = callerFrames.limit(limit);
+        }
+        return callerFrames.map(StackFrame::toStackTraceElement).collect(Collectors.toList());
+      });
+      AllocationCallSite interned = intern(type, frames);
+      if (interned != null) {
+        site = interned;
+      } else {
+        site = new AllocationCallSite(site, frames.toArray(new StackTraceElement[frames.size()]));
+      }
+    }
+    site.opened();
+    TrackerEvents.INSTANCE.opened(type, site.getId());
+    return site;
+  }
+
+  private static boolean isSampled(int rate) {
+    return rate != 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+  }
+
+  /**
+   * Skips the frames of the tracker and wrapper implementations, including this class, along with the JDK frames
+   * they call through, such as {@link ConcurrentMap#computeIfAbsent(java.lang.Object, java.util.function.Function)}.
+   */
+  private static boolean isImplementation(StackFrame frame) {
+    String className = frame.getClassName();
+    return className.startsWith("com.aoapps.sql.tracker.")
+        || className.startsWith("com.aoapps.sql.wrapper.")
+        || className.startsWith("java.")
+        || className.startsWith("jdk.")
+        || className.startsWith("sun.");
+  }
+
+  /**
+   * Interns a call site.
+   *
+   * @return  The call site or {@code null} when {@link #MAX_CALL_SITES} reached
+   */
+  private static AllocationCallSite intern(TrackedType type, List<StackTraceElement> frames) {
+    ConcurrentMap<List<StackTraceElement>, AllocationCallSite> sites = interned.get(type.ordinal());
+    AllocationCallSite site = sites.get(frames);
+    if (site == null && !callSitesFull) {
+      site = sites.computeIfAbsent(frames, key -> {
+        synchronized (callSitesLock) {
+          int id = callSiteCount;
+          if (id - TrackedType.COUNT >= MAX_CALL_SITES) {
+            if (!callSitesFull) {
+              callSitesFull = true;
+              logger.log(Level.WARNING, "Reached the maximum of " + MAX_CALL_SITES + " allocation call sites, set by "
+                  + MAX_CALL_SITES_PROPERTY + ".  Objects allocated at new call sites keep their own stack trace and"
+                  + " are counted with the call site of their type.  Consider a smaller " + FRAME_LIMIT_PROPERTY
+                  + " than " + frameLimit + ".");
+            }
+            return null;
+          }
+          AllocationCallSite[] newCallSites = callSites;
+          if (id == newCallSites.length) {
+            newCallSites = Arrays.copyOf(newCallSites, id * 2);
+          }
+          AllocationCallSite newSite = new AllocationCallSite(id, type, key.toArray(new StackTraceElement[key.size()]));
+          newCallSites[id] = newSite;
+          callSiteCount = id + 1;
+          callSites = newCallSites;
+          return newSite;
+        }
+      });
+    }
+    return site;
+  }
+
+  /**
+   * Gets the stack trace of a call site, creating a new {@link Exception} on each call.
+   *
+   * @param  callSite  The call site returned by {@link #capture(com.aoapps.sql.tracker.TrackedType, java.util.logging.Logger)}
+   *
+   * @return  The stack trace or {@code null} when no stack trace captured
+   */
+  static Exception getStacktrace(AllocationCallSite callSite) {
+    return callSite.newStacktrace();
+  }
+
+  /**
+   * Counts an object as closed, called once per object.
+   *
+   * @param  allocationTime  The time allocated, from {@link System#nanoTime()}
+   */
+  static void closed(AllocationCallSite callSite, long allocationTime) {
+    callSite.closed();
+    TrackerEvents.INSTANCE.closed(callSite.getType(), callSite.getId(), allocationTime);
+  }
+
+  /**
+   * Counts an object as leaked, called before it is closed by its connection or driver.
+   */
+  static void leaked(AllocationCallSite site) {
+    site.leaked();
+    TrackerEvents.INSTANCE.forceClosed(site.getType(), site.getId());
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,8 +23,7 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
+import com.aoapps.lang.AutoCloseables;
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.ArrayWrapperImpl;
 import com.aoapps.sql.wrapper.StatementWrapperImpl;
@@ -32,8 +31,6 @@ import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -48,23 +45,36 @@ public class ArrayTrackerImpl extends ArrayWrapperImpl
 
   private static final Logger logger = Logger.getLogger(ArrayTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link Array} tracker.
    */
   public ArrayTrackerImpl(ConnectionTrackerImpl connectionTracker, StatementWrapperImpl stmtWrapper, Array wrapped) {
     super(connectionTracker, stmtWrapper, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.ARRAY, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.ARRAY, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -72,26 +82,80 @@ public class ArrayTrackerImpl extends ArrayWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The children of the first object that obtained this array, which closes it when closed.
+   */
+  private TrackedChildren parent; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<ResultSet, ResultSetTrackerImpl> trackedResultSets = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Sets the parent when not already owned.
+   */
+  synchronized void setParent(TrackedChildren newParent) {
+    if (parent == null) {
+      parent = newParent;
+      newParent.added(getWrapped(), this);
+    }
+  }
+
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection and parent then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    TrackedChildren p;
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      p = parent;
+      parent = null;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.ARRAY, this);
+    }
+    connectionTracker.untrack(TrackedType.ARRAY, getWrapped(), this);
+    if (p != null) {
+      p.removed(getWrapped(), this);
+    }
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * The objects obtained through this array, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSet, ResultSetTrackerImpl> getTrackedResultSets() {
-    return trackedResultSets;
+    return connectionTracker.getTrackedChildren(TrackedType.RESULT_SET, children);
   }
 
   @Override
   protected ResultSetTrackerImpl wrapResultSet(ResultSet results) throws SQLException {
-    return ConnectionTrackerImpl.getIfAbsent(trackedResultSets, results,
+    return ConnectionTrackerImpl.adopt(children, results,
         () -> (ResultSetTrackerImpl) super.wrapResultSet(results),
-        ResultSetTrackerImpl::getWrapped
+        ResultSetTrackerImpl::setParent
     );
   }
 
@@ -103,9 +167,11 @@ public class ArrayTrackerImpl extends ArrayWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void free() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, trackedResultSets);
+    if (!children.isEmpty()) {
+      t0 = AutoCloseables.closeAndCatch(t0, connectionTracker.drainChildren(TrackedType.RESULT_SET, children));
+    }
     try {
       super.free();
     } catch (Throwable t) {
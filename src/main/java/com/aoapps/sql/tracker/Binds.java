@@ -0,0 +1,230 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.RowId;
+import java.sql.SQLXML;
+import java.sql.Struct;
+import java.util.Arrays;
+
+/**
+ * The parameters set on a statement, captured for the {@link SlowQueryLog}.  Primitives are stored without boxing and
+ * objects by reference, so capturing a parameter does not allocate.  Values are only converted to text when logged.
+ *
+ * <p>Not thread-safe, as with the statement itself.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Binds {
+
+  private static final byte UNSET = 0;
+  private static final byte NULL = 1;
+  private static final byte BOOLEAN = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte OBJECT = 5;
+  private static final byte STREAM = 6;
+
+  private final byte[] kinds = new byte[SlowQueryLog.MAX_PARAMETERS];
+  private final long[] primitives = new long[SlowQueryLog.MAX_PARAMETERS];
+  private final Object[] objects = new Object[SlowQueryLog.MAX_PARAMETERS];
+
+  /**
+   * The highest parameter index set, which may be beyond the parameters captured.
+   */
+  private int count;
+
+  /**
+   * Gets the offset of a parameter, updating the count.
+   *
+   * @return  The offset or {@code -1} when beyond the parameters captured
+   */
+  private int offset(int parameterIndex) {
+    if (parameterIndex > count) {
+      count = parameterIndex;
+    }
+    int offset = parameterIndex - 1;
+    return (offset >= 0 && offset < kinds.length) ? offset : -1;
+  }
+
+  private void set(int parameterIndex, byte kind, long primitive, Object object) {
+    int offset = offset(parameterIndex);
+    if (offset != -1) {
+      kinds[offset] = kind;
+      primitives[offset] = primitive;
+      objects[offset] = object;
+    }
+  }
+
+  void setNull(int parameterIndex) {
+    set(parameterIndex, NULL, 0, null);
+  }
+
+  void setBoolean(int parameterIndex, boolean x) {
+    set(parameterIndex, BOOLEAN, x ? 1 : 0, null);
+  }
+
+  void setLong(int parameterIndex, long x) {
+    set(parameterIndex, LONG, x, null);
+  }
+
+  void setDouble(int parameterIndex, double x) {
+    set(parameterIndex, DOUBLE, Double.doubleToRawLongBits(x), null);
+  }
+
+  /**
+   * Captures an object, which is converted to text only when logged.
+   */
+  void setObject(int parameterIndex, Object x) {
+    if (x == null) {
+      setNull(parameterIndex);
+    } else {
+      set(parameterIndex, OBJECT, 0, x);
+    }
+  }
+
+  /**
+   * Captures a stream by its type and length only.
+   *
+   * @param  length  The length or {@code -1} when unknown
+   */
+  void setStream(int parameterIndex, Object x, long length) {
+    if (x == null) {
+      setNull(parameterIndex);
+    } else {
+      set(parameterIndex, STREAM, length, x);
+    }
+  }
+
+  /**
+   * Clears all parameters.
+   */
+  void clear() {
+    int captured = Math.min(count, kinds.length);
+    Arrays.fill(kinds, 0, captured, UNSET);
+    Arrays.fill(objects, 0, captured, null);
+    count = 0;
+  }
+
+  /**
+   * Appends the parameters, separated by commas.
+   *
+   * @param  maxLength  The maximum number of characters per parameter
+   */
+  void appendTo(StringBuilder out, int maxLength) {
+    int captured = Math.min(count, kinds.length);
+    for (int i = 0; i < captured; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      long primitive = primitives[i];
+      Object object = objects[i];
+      switch (kinds[i]) {
+        case UNSET:
+          out.append('?');
+          break;
+        case NULL:
+          out.append("NULL");
+          break;
+        case BOOLEAN:
+          out.append(primitive != 0);
+          break;
+        case LONG:
+          out.append(primitive);
+          break;
+        case DOUBLE:
+          out.append(Double.longBitsToDouble(primitive));
+          break;
+        case STREAM:
+          out.append(getTypeName(object));
+          if (primitive != -1) {
+            out.append('(').append(primitive).append(')');
+          }
+          break;
+        case OBJECT:
+          if (object instanceof byte[]) {
+            out.append("byte[").append(((byte[]) object).length).append(']');
+          } else if (object instanceof String) {
+            String str = (String) object;
+            out.append('\'');
+            appendTruncated(out, str, maxLength);
+            out.append('\'');
+          } else if (object instanceof Blob || object instanceof Clob || object instanceof SQLXML || object instanceof Array
+              || object instanceof Ref || object instanceof RowId || object instanceof Struct) {
+            out.append(getTypeName(object));
+          } else {
+            appendTruncated(out, String.valueOf(object), maxLength);
+          }
+          break;
+        default:
+          throw new AssertionError("Unexpected kind: " + kinds[i]);
+      }
+    }
+    if (count > captured) {
+      out.append(", ... ").append(count - captured).append(" more");
+    }
+  }
+
+  private static void appendTruncated(StringBuilder out, String str, int maxLength) {
+    if (str.length() <= maxLength) {
+      out.append(str);
+    } else {
+      out.append(str, 0, maxLength).append("...(").append(str.length()).append(')');
+    }
+  }
+
+  private static String getTypeName(Object object) {
+    if (object instanceof InputStream) {
+      return "InputStream";
+    } else if (object instanceof Reader) {
+      return "Reader";
+    } else if (object instanceof NClob) {
+      return "NClob";
+    } else if (object instanceof Blob) {
+      return "Blob";
+    } else if (object instanceof Clob) {
+      return "Clob";
+    } else if (object instanceof SQLXML) {
+      return "SQLXML";
+    } else if (object instanceof Array) {
+      return "Array";
+    } else if (object instanceof Ref) {
+      return "Ref";
+    } else if (object instanceof RowId) {
+      return "RowId";
+    } else if (object instanceof Struct) {
+      return "Struct";
+    } else {
+      return object.getClass().getSimpleName();
+    }
+  }
+}
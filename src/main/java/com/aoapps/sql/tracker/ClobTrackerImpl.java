@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,8 +23,6 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.ClobWrapperImpl;
 import java.io.InputStream;
@@ -34,8 +32,6 @@ import java.io.Writer;
 import java.sql.Clob;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -50,23 +46,36 @@ public class ClobTrackerImpl extends ClobWrapperImpl
 
   private static final Logger logger = Logger.getLogger(ClobTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link Clob} tracker.
    */
   public ClobTrackerImpl(ConnectionTrackerImpl connectionTracker, Clob wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.CLOB, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.CLOB, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -74,78 +83,156 @@ public class ClobTrackerImpl extends ClobWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The children of the first object that obtained this clob, which closes it when closed.
+   */
+  private TrackedChildren parent; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<InputStream, InputStreamTracker> trackedInputStreams = synchronizedMap(new IdentityHashMap<>());
-  private final Map<OutputStream, OutputStreamTracker> trackedOutputStreams = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Reader, ReaderTracker> trackedReaders = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Writer, WriterTracker> trackedWriters = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Sets the parent when not already owned.
+   */
+  synchronized void setParent(TrackedChildren newParent) {
+    if (parent == null) {
+      parent = newParent;
+      newParent.added(getWrapped(), this);
+    }
+  }
+
+  /**
+   * The result set this clob was obtained through, which meters the characters read, or {@code null} when not
+   * obtained through a result set.
+   */
+  private ResultSetTrackerImpl meteredBy;
+
+  final void setMeteredBy(ResultSetTrackerImpl meteredBy) {
+    this.meteredBy = meteredBy;
+  }
+
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection and parent then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    TrackedChildren p;
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      p = parent;
+      parent = null;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.CLOB, this);
+    }
+    connectionTracker.untrack(TrackedType.CLOB, getWrapped(), this);
+    if (p != null) {
+      p.removed(getWrapped(), this);
+    }
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * The objects obtained through this clob, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<InputStream, InputStreamTracker> getTrackedInputStreams() {
-    return trackedInputStreams;
+    return connectionTracker.getTrackedChildren(TrackedType.INPUT_STREAM, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<OutputStream, OutputStreamTracker> getTrackedOutputStreams() {
-    return trackedOutputStreams;
+    return connectionTracker.getTrackedChildren(TrackedType.OUTPUT_STREAM, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Reader, ReaderTracker> getTrackedReaders() {
-    return trackedReaders;
+    return connectionTracker.getTrackedChildren(TrackedType.READER, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Writer, WriterTracker> getTrackedWriters() {
-    return trackedWriters;
+    return connectionTracker.getTrackedChildren(TrackedType.WRITER, children);
   }
 
   @Override
   protected InputStreamTracker wrapInputStream(InputStream in) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedInputStreams, in,
+    InputStreamTracker tracker = ConnectionTrackerImpl.adopt(
+        children, in,
         () -> (InputStreamTracker) super.wrapInputStream(in),
-        InputStreamTracker::getWrapped
+        InputStreamTracker::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(meteredBy);
+    }
+    return tracker;
   }
 
   @Override
   protected OutputStreamTracker wrapOutputStream(OutputStream out) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedOutputStreams, out,
+    return ConnectionTrackerImpl.adopt(
+        children, out,
         () -> (OutputStreamTracker) super.wrapOutputStream(out),
-        OutputStreamTracker::getWrapped
+        OutputStreamTracker::setParent
     );
   }
 
   @Override
   protected ReaderTracker wrapReader(Reader in) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedReaders, in,
+    ReaderTracker tracker = ConnectionTrackerImpl.adopt(
+        children, in,
         () -> (ReaderTracker) super.wrapReader(in),
-        ReaderTracker::getWrapped
+        ReaderTracker::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(meteredBy);
+    }
+    return tracker;
   }
 
   @Override
   protected WriterTracker wrapWriter(Writer out) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedWriters, out,
+    return ConnectionTrackerImpl.adopt(
+        children, out,
         () -> (WriterTracker) super.wrapWriter(out),
-        WriterTracker::getWrapped
+        WriterTracker::setParent
     );
   }
 
+  @Override
+  public String getSubString(long pos, int length) throws SQLException {
+    String str = super.getSubString(pos, length);
+    if (str != null) {
+      ResultSetTrackerImpl m = meteredBy;
+      if (m != null) {
+        m.charsRead(str.length());
+      }
+    }
+    return str;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -157,12 +244,14 @@ public class ClobTrackerImpl extends ClobWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "unchecked"})
   public void free() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedInputStreams", trackedInputStreams);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedOutputStreams", trackedOutputStreams);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedReaders", trackedReaders);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedWriters", trackedWriters);
+    if (!children.isEmpty()) {
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedInputStreams", connectionTracker.drainChildren(TrackedType.INPUT_STREAM, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedOutputStreams", connectionTracker.drainChildren(TrackedType.OUTPUT_STREAM, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedReaders", connectionTracker.drainChildren(TrackedType.READER, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ClobTrackerImpl.class, "free()", "trackedWriters", connectionTracker.drainChildren(TrackedType.WRITER, children));
+    }
     try {
       super.free();
     } catch (Throwable t) {
@@ -0,0 +1,380 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A concurrent map of tracked objects, compared by identity.
+ *
+ * <p>Lookups never lock.  Inserts into an empty bin of the underlying {@link ConcurrentHashMap} are a compare-and-set,
+ * while other inserts and removals lock only the bin of the key, so threads wrapping, closing, or inspecting different
+ * objects rarely contend on the same monitor.  Iteration is weakly consistent and never throws
+ * {@link java.util.ConcurrentModificationException}.</p>
+ *
+ * <p>Each lookup wraps its key in a short-lived identity key, which does not escape the call and is usually removed by
+ * escape analysis.  No per-thread state is kept, so no instance of this class is retained by the threads of a
+ * container.</p>
+ *
+ * <p>{@link #computeIfAbsent(java.lang.Object, java.util.function.Function)} is the default of {@link ConcurrentMap},
+ * which calls the mapping function without holding any lock.  The function may be called by more than one thread for
+ * the same key, with only the first value inserted.</p>
+ *
+ * <p>This does not permit {@code null} keys or values.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ConcurrentIdentityMap<K, V> extends AbstractMap<K, V> implements DrainableMap<K, V> {
+
+  /**
+   * Compares the wrapped object by identity.
+   */
+  private static final class IdentityKey<K> {
+
+    private final K value;
+
+    private IdentityKey(K value) {
+      this.value = value;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof IdentityKey) && ((IdentityKey<?>) obj).value == value;
+    }
+  }
+
+  private final ConcurrentHashMap<IdentityKey<K>, V> map = new ConcurrentHashMap<>();
+
+  /**
+   * Notified of each value added or removed or {@code null} when not counted.
+   */
+  private final ObjIntConsumer<? super V> sizeListener;
+
+  /**
+   * Creates a new, empty map.
+   */
+  ConcurrentIdentityMap() {
+    this(null);
+  }
+
+  /**
+   * Creates a new, empty map, notifying a listener of each value added or removed.
+   *
+   * @param  sizeListener  Called with each value and {@code 1} when added or {@code -1} when removed, after the
+   *                       change.  A value replaced is removed then its replacement added.  Must be quick and must not
+   *                       access this map.
+   */
+  ConcurrentIdentityMap(ObjIntConsumer<? super V> sizeListener) {
+    this.sizeListener = sizeListener;
+  }
+
+  private void added(V value) {
+    if (sizeListener != null) {
+      sizeListener.accept(value, 1);
+    }
+  }
+
+  private void removed(V value) {
+    if (sizeListener != null) {
+      sizeListener.accept(value, -1);
+    }
+  }
+
+  private void replaced(V oldValue, V newValue) {
+    if (sizeListener != null && oldValue != newValue) {
+      sizeListener.accept(oldValue, -1);
+      sizeListener.accept(newValue, 1);
+    }
+  }
+
+  /**
+   * Creates a new key.
+   *
+   * @throws  NullPointerException  when {@code key} is {@code null}
+   */
+  private static <K> IdentityKey<K> key(K key) {
+    return new IdentityKey<>(Objects.requireNonNull(key));
+  }
+
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return value != null && map.containsValue(value);
+  }
+
+  @Override
+  public V get(Object key) {
+    if (key == null) {
+      return null;
+    }
+    return map.get(key(key));
+  }
+
+  @Override
+  public V put(K key, V value) {
+    V old = map.put(key(key), value);
+    if (old == null) {
+      added(value);
+    } else {
+      replaced(old, value);
+    }
+    return old;
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (key == null) {
+      return null;
+    }
+    V old = map.remove(key(key));
+    if (old != null) {
+      removed(old);
+    }
+    return old;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Removes each mapping individually, so the values removed are known.</p>
+   */
+  @Override
+  public void clear() {
+    for (Map.Entry<IdentityKey<K>, V> entry : map.entrySet()) {
+      V value = entry.getValue();
+      if (map.remove(entry.getKey(), value)) {
+        removed(value);
+      }
+    }
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    V existing = map.putIfAbsent(key(key), value);
+    if (existing == null) {
+      added(value);
+    }
+    return existing;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean remove(Object key, Object value) {
+    if (key == null || value == null) {
+      return false;
+    }
+    if (map.remove(key(key), value)) {
+      removed((V) value);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    if (map.replace(key(key), oldValue, newValue)) {
+      replaced(oldValue, newValue);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public V replace(K key, V value) {
+    V old = map.replace(key(key), value);
+    if (old != null) {
+      replaced(old, value);
+    }
+    return old;
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    map.forEach((k, v) -> action.accept(k.value, v));
+  }
+
+  @Override
+  public List<V> drain() {
+    if (map.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<V> values = new ArrayList<>(map.size());
+    for (Map.Entry<IdentityKey<K>, V> entry : map.entrySet()) {
+      V value = entry.getValue();
+      if (map.remove(entry.getKey(), value)) {
+        values.add(value);
+        removed(value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Copies all mappings into a new identity map.  The copy may be freely iterated without any concurrent modification,
+   * but it is weakly consistent: mappings added or removed while copying may or may not be included.
+   *
+   * @return  The copy or an empty, unmodifiable map when empty.
+   */
+  Map<K, V> snapshot() {
+    if (map.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<K, V> copy = new IdentityHashMap<>(map.size());
+    map.forEach((k, v) -> copy.put(k.value, v));
+    return copy;
+  }
+
+  private final class IdentityEntry implements Map.Entry<K, V> {
+
+    private final Map.Entry<IdentityKey<K>, V> entry;
+
+    private IdentityEntry(Map.Entry<IdentityKey<K>, V> entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public K getKey() {
+      return entry.getKey().value;
+    }
+
+    @Override
+    public V getValue() {
+      return entry.getValue();
+    }
+
+    @Override
+    public V setValue(V value) {
+      V old = entry.setValue(value);
+      replaced(old, value);
+      return old;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+      return other.getKey() == getKey() && getValue().equals(other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(getKey()) ^ getValue().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  private final Set<Map.Entry<K, V>> entrySet = new AbstractSet<>() {
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      Iterator<Map.Entry<IdentityKey<K>, V>> iter = map.entrySet().iterator();
+      return new Iterator<>() {
+        private Map.Entry<IdentityKey<K>, V> last;
+
+        @Override
+        public boolean hasNext() {
+          return iter.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+          last = iter.next();
+          return new IdentityEntry(last);
+        }
+
+        @Override
+        public void remove() {
+          if (last == null) {
+            throw new IllegalStateException();
+          }
+          V old = map.remove(last.getKey());
+          if (old != null) {
+            removed(old);
+          }
+          last = null;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return map.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentIdentityMap.this.clear();
+    }
+  };
+
+  @Override
+  @SuppressWarnings("ReturnOfCollectionOrArrayField") // Is a view
+  public Set<Map.Entry<K, V>> entrySet() {
+    return entrySet;
+  }
+}
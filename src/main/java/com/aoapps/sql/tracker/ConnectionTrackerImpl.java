@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,12 +23,6 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
-import com.aoapps.collections.IdentityKey;
-import com.aoapps.collections.transformers.FunctionalTransformer;
-import com.aoapps.collections.transformers.TransformMap;
-import com.aoapps.collections.transformers.Transformer;
 import com.aoapps.lang.AutoCloseables;
 import com.aoapps.lang.Runnables;
 import com.aoapps.lang.Throwables;
@@ -63,14 +57,14 @@ import java.sql.Struct;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -84,18 +78,25 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
 
   private static final Logger logger = Logger.getLogger(ConnectionTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final DriverTracker driver;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link Connection} tracker.
    */
   public ConnectionTrackerImpl(DriverTracker driver, Connection wrapped) {
     super(driver, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.driver = driver;
+    statementCacheSize = driver.getStatementCacheSize();
+    cancelUnexhausted = driver.isCancelUnexhausted();
+    rowScoped = driver.isRowScoped();
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.CONNECTION, logger);
+    allocationTime = System.nanoTime();
+    updateListener();
+    fireOpened(TrackedType.CONNECTION, this);
   }
 
   /**
@@ -103,16 +104,26 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
    */
   public ConnectionTrackerImpl(Connection wrapped) {
     super(wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.driver = null;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.CONNECTION, logger);
+    allocationTime = System.nanoTime();
+    updateListener();
+    fireOpened(TrackedType.CONNECTION, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -120,231 +131,481 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The listeners registered on this connection.
+   */
+  private final TrackerListeners listeners = new TrackerListeners();
+
+  /**
+   * The listeners of the JVM, the driver, and this connection combined, or {@code null} when there are none.
+   */
+  private volatile TrackerListener listener;
+
+  /**
+   * Adds a listener to this connection, in addition to any listeners of the JVM and the driver.
+   *
+   * @return  {@code true} when added or {@code false} when already registered
+   *
+   * @see  DriverTracker#addListener(com.aoapps.sql.tracker.TrackerListener)
+   */
+  public final boolean addListener(TrackerListener listener) {
+    if (listeners.add(listener)) {
+      updateListener();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Removes a listener from this connection.
+   *
+   * @return  {@code true} when removed or {@code false} when not registered
+   */
+  public final boolean removeListener(TrackerListener listener) {
+    if (listeners.remove(listener)) {
+      updateListener();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Combines the listeners again, called when the listeners of this connection or its driver change.
+   */
+  final void updateListener() {
+    synchronized (listeners) {
+      listener = TrackerListeners.combine(driver == null ? null : driver.getListeners(), listeners);
+    }
+  }
+
+  /**
+   * Gets the combined listener.
+   *
+   * @return  The listener or {@code null} when there are no listeners
+   */
+  final TrackerListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Notifies listeners a tracked object has been created.
+   */
+  final void fireOpened(TrackedType type, Object tracker) {
+    TrackerListener l = listener;
+    if (l != null) {
+      l.opened(type, tracker);
+    }
+  }
+
+  /**
+   * Notifies listeners a tracked object has been closed.
+   */
+  final void fireClosed(TrackedType type, Object tracker) {
+    TrackerListener l = listener;
+    if (l != null) {
+      l.closed(type, tracker);
+    }
+  }
+
+  /**
+   * The executions counted for the {@link NPlusOneDetector} since created or last reported, created on first use.
+   */
+  private NPlusOneDetector.Scope connectionExecutions; // Guarded by this
+
+  /**
+   * The executions counted for the {@link NPlusOneDetector} in the current transaction, created on first use.
+   */
+  private NPlusOneDetector.Scope transactionExecutions; // Guarded by this
+
+  /**
+   * Whether in a transaction started by {@link #setAutoCommit(boolean) setAutoCommit(false)}.
+   */
+  private boolean inTransaction; // Guarded by this
+
+  /**
+   * Counts an execution for the {@link NPlusOneDetector}.
+   */
+  final void countExecution(String sql) {
+    int threshold = NPlusOneDetector.getThreshold();
+    if (threshold != 0) {
+      String normalized = NPlusOneDetector.normalize(sql);
+      boolean connectionScope = NPlusOneDetector.isConnectionScope();
+      synchronized (this) {
+        if (connectionScope) {
+          if (connectionExecutions == null) {
+            connectionExecutions = new NPlusOneDetector.Scope("connection");
+          }
+          connectionExecutions.executed(normalized, threshold);
+        }
+        if (inTransaction) {
+          if (transactionExecutions == null) {
+            transactionExecutions = new NPlusOneDetector.Scope("transaction");
+          }
+          transactionExecutions.executed(normalized, threshold);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reports and resets the executions counted by the {@link NPlusOneDetector} for this connection, when
+   * {@linkplain NPlusOneDetector#setConnectionScope(boolean) counted per connection}.  Called when closed, and may be
+   * called by a connection pool on each checkout or return, so the executions of unrelated uses of a pooled connection
+   * are not counted together.  The current transaction, if any, is not affected.
+   */
+  public final void reportExecutions() {
+    NPlusOneDetector.Scope ended;
+    synchronized (this) {
+      ended = connectionExecutions;
+      connectionExecutions = null;
+    }
+    if (ended != null) {
+      ended.report();
+    }
+  }
+
+  /**
+   * Ends the current transaction, if any, reporting its executions.
+   *
+   * @param  inTransaction  Whether a new transaction begins, which is the case unless returning to auto-commit mode
+   */
+  private void endTransaction(boolean inTransaction) {
+    NPlusOneDetector.Scope ended;
+    synchronized (this) {
+      ended = transactionExecutions;
+      transactionExecutions = null;
+      this.inTransaction &= inTransaction;
+    }
+    if (ended != null) {
+      ended.report();
+    }
+  }
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<Array, ArrayTrackerImpl> trackedArrays = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Blob, BlobTrackerImpl> trackedBlobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<CallableStatement, CallableStatementTrackerImpl> trackedCallableStatements = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Clob, ClobTrackerImpl> trackedClobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<DatabaseMetaData, DatabaseMetaDataTrackerImpl> trackedDatabaseMetaDatas = synchronizedMap(new IdentityHashMap<>());
-  private final Map<InputStream, InputStreamTracker> trackedInputStreams = synchronizedMap(new IdentityHashMap<>());
-  private final Map<NClob, NClobTrackerImpl> trackedNClobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<OutputStream, OutputStreamTracker> trackedOutputStreams = synchronizedMap(new IdentityHashMap<>());
-  private final Map<ParameterMetaData, ParameterMetaDataTrackerImpl> trackedParameterMetaDatas = synchronizedMap(new IdentityHashMap<>());
-  private final Map<PreparedStatement, PreparedStatementTrackerImpl> trackedPreparedStatements = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Reader, ReaderTracker> trackedReaders = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Ref, RefTrackerImpl> trackedRefs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<ResultSet, ResultSetTrackerImpl> trackedResultSets = synchronizedMap(new IdentityHashMap<>());
-  private final Map<ResultSetMetaData, ResultSetMetaDataTrackerImpl> trackedResultSetMetaDatas = synchronizedMap(new IdentityHashMap<>());
-  private final Map<RowId, RowIdTrackerImpl> trackedRowIds = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLData, SQLDataTrackerImpl> trackedSQLDatas = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLInput, SQLInputTrackerImpl> trackedSQLInputs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLOutput, SQLOutputTrackerImpl> trackedSQLOutputs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLXML, SQLXMLTrackerImpl> trackedSQLXMLs = synchronizedMap(new IdentityHashMap<>());
-
-  /**
-   * Maintains ordering with {@link LinkedHashMap} while using {@link IdentityKey} as a {@linkplain MapWrapper key wrapper}.
+  /**
+   * Whether closed, so the object is only counted as closed once.
    */
-  @SuppressWarnings("unchecked")
-  private final Map<Savepoint, SavepointTrackerImpl> trackedSavepoints = synchronizedMap(
-      TransformMap.of(
-          new LinkedHashMap<>(),
-          new FunctionalTransformer<>(
-              Savepoint.class,
-                  /*(Class<IdentityKey<Savepoint>>)*/(Class) IdentityKey.class,
-              IdentityKey::of,
-              IdentityKey::getValue
-          ),
-          Transformer.identity()
-      )
-  );
-
-  private final Map<Statement, StatementTrackerImpl> trackedStatements = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Struct, StructTrackerImpl> trackedStructs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Writer, WriterTracker> trackedWriters = synchronizedMap(new IdentityHashMap<>());
-
-  @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the driver then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      fireClosed(TrackedType.CONNECTION, this);
+      reportExecutions();
+    }
+    if (driver != null) {
+      driver.untrack(getWrapped(), this);
+    }
+    return runAndCatch(handlers);
+  }
+
+  /**
+   * The tracked objects, with each per-type map only created on first use.
+   */
+  private final TrackedMaps trackedMaps = new TrackedMaps();
+
+  /**
+   * Starts counting the tracked objects per call site, called when registered to be
+   * {@linkplain DriverTracker#setCleanAbandoned(boolean) closed once abandoned}.
+   *
+   * @see  TrackedMaps#countOpenCallSites()
+   */
+  final ConcurrentMap<AllocationCallSite, Integer> countOpenCallSites() {
+    return trackedMaps.countOpenCallSites();
+  }
+
+  @Override
   public final Map<Array, ArrayTrackerImpl> getTrackedArrays() {
-    return trackedArrays;
+    return trackedMaps.get(TrackedType.ARRAY);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Blob, BlobTrackerImpl> getTrackedBlobs() {
-    return trackedBlobs;
+    return trackedMaps.get(TrackedType.BLOB);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<CallableStatement, CallableStatementTrackerImpl> getTrackedCallableStatements() {
-    return trackedCallableStatements;
+    return trackedMaps.get(TrackedType.CALLABLE_STATEMENT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Clob, ClobTrackerImpl> getTrackedClobs() {
-    return trackedClobs;
+    return trackedMaps.get(TrackedType.CLOB);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<DatabaseMetaData, DatabaseMetaDataTrackerImpl> getTrackedDatabaseMetaDatas() {
-    return trackedDatabaseMetaDatas;
+    return trackedMaps.get(TrackedType.DATABASE_META_DATA);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<InputStream, InputStreamTracker> getTrackedInputStreams() {
-    return trackedInputStreams;
+    return trackedMaps.get(TrackedType.INPUT_STREAM);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<NClob, NClobTrackerImpl> getTrackedNClobs() {
-    return trackedNClobs;
+    return trackedMaps.get(TrackedType.NCLOB);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<OutputStream, OutputStreamTracker> getTrackedOutputStreams() {
-    return trackedOutputStreams;
+    return trackedMaps.get(TrackedType.OUTPUT_STREAM);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ParameterMetaData, ParameterMetaDataTrackerImpl> getTrackedParameterMetaDatas() {
-    return trackedParameterMetaDatas;
+    return trackedMaps.get(TrackedType.PARAMETER_META_DATA);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<PreparedStatement, PreparedStatementTrackerImpl> getTrackedPreparedStatements() {
-    return trackedPreparedStatements;
+    return trackedMaps.get(TrackedType.PREPARED_STATEMENT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Reader, ReaderTracker> getTrackedReaders() {
-    return trackedReaders;
+    return trackedMaps.get(TrackedType.READER);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Ref, RefTrackerImpl> getTrackedRefs() {
-    return trackedRefs;
+    return trackedMaps.get(TrackedType.REF);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSet, ResultSetTrackerImpl> getTrackedResultSets() {
-    return trackedResultSets;
+    return trackedMaps.get(TrackedType.RESULT_SET);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSetMetaData, ResultSetMetaDataTrackerImpl> getTrackedResultSetMetaDatas() {
-    return trackedResultSetMetaDatas;
+    return trackedMaps.get(TrackedType.RESULT_SET_META_DATA);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<RowId, RowIdTrackerImpl> getTrackedRowIds() {
-    return trackedRowIds;
+    return trackedMaps.get(TrackedType.ROW_ID);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLData, SQLDataTrackerImpl> getTrackedSQLDatas() {
-    return trackedSQLDatas;
+    return trackedMaps.get(TrackedType.SQL_DATA);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLInput, SQLInputTrackerImpl> getTrackedSQLInputs() {
-    return trackedSQLInputs;
+    return trackedMaps.get(TrackedType.SQL_INPUT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLOutput, SQLOutputTrackerImpl> getTrackedSQLOutputs() {
-    return trackedSQLOutputs;
+    return trackedMaps.get(TrackedType.SQL_OUTPUT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLXML, SQLXMLTrackerImpl> getTrackedSQLXMLs() {
-    return trackedSQLXMLs;
+    return trackedMaps.get(TrackedType.SQLXML);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Savepoint, SavepointTrackerImpl> getTrackedSavepoints() {
-    return trackedSavepoints;
+    return trackedMaps.get(TrackedType.SAVEPOINT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Statement, StatementTrackerImpl> getTrackedStatements() {
-    return trackedStatements;
+    return trackedMaps.get(TrackedType.STATEMENT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Struct, StructTrackerImpl> getTrackedStructs() {
-    return trackedStructs;
+    return trackedMaps.get(TrackedType.STRUCT);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Writer, WriterTracker> getTrackedWriters() {
-    return trackedWriters;
+    return trackedMaps.get(TrackedType.WRITER);
+  }
+
+  /**
+   * Gets the tracked objects of the given type or {@code null} when the type has not yet been used.
+   * Savepoints are in a synchronized map, while all other types may be iterated without locking.
+   */
+  <V extends AllocationStacktraceProvider> Map<?, V> getTrackedIfPresent(TrackedType type) {
+    return trackedMaps.getIfPresent(type);
+  }
+
+  /**
+   * Gets the number of tracked objects of the given type that have not yet been closed.
+   * This is a single read of a counter, except for {@linkplain Savepoint savepoints} which are counted on request.
+   *
+   * @see  #getTrackedCount()
+   */
+  public final int getTrackedCount(TrackedType type) {
+    if (type == TrackedType.SAVEPOINT) {
+      Map<?, ?> trackedSavepoints = trackedMaps.getIfPresent(TrackedType.SAVEPOINT);
+      return (trackedSavepoints == null) ? 0 : trackedSavepoints.size();
+    } else {
+      return trackedMaps.getCount(type);
+    }
+  }
+
+  /**
+   * Gets the number of tracked objects of all types that have not yet been closed.
+   *
+   * @see  #getTrackedCount(com.aoapps.sql.tracker.TrackedType)
+   */
+  public final int getTrackedCount() {
+    return trackedMaps.getCount() + getTrackedCount(TrackedType.SAVEPOINT);
+  }
+
+  /**
+   * Removes all values from the given map, returning the values removed.
+   * A {@link DrainableMap} is drained without locking, while any other map is synchronized on.
+   * A {@code null} map, which has not yet been created, has nothing to remove.
+   */
+  @SuppressWarnings("unchecked")
+  private static <V> List<V> clear(Map<?, V> map) {
+    if (map == null) {
+      return Collections.emptyList();
+    } else if (map instanceof DrainableMap) {
+      return ((DrainableMap<?, V>) map).drain();
+    } else {
+      synchronized (map) {
+        if (map.isEmpty()) {
+          return Collections.emptyList();
+        }
+        List<V> values = new ArrayList<>(map.values());
+        map.clear();
+        return values;
+      }
+    }
   }
 
   static <C extends AutoCloseable & AllocationStacktraceProvider> Throwable clearCloseAndCatch(Throwable t0, Map<?, C> map) {
-    List<C> closeMes;
-    synchronized (map) {
-      closeMes = new ArrayList<>(map.values());
-      map.clear();
+    return clearCloseAndCatch(t0, map, false, null);
+  }
+
+  /**
+   * Closes all tracked objects in the given map.
+   *
+   * @param  leaked    Counts the objects as {@linkplain AllocationCallSite#getLeaked() leaked} before closing them
+   * @param  listener  When leaked, notified of each object as {@linkplain TrackerListener#forceClosed(com.aoapps.sql.tracker.TrackedType, java.lang.Object) force-closed},
+   *                   may be {@code null}
+   */
+  static <C extends AutoCloseable & AllocationStacktraceProvider> Throwable clearCloseAndCatch(
+      Throwable t0,
+      Map<?, C> map,
+      boolean leaked,
+      TrackerListener listener
+  ) {
+    if (map == null) {
+      // Short-cut map never created
+      return t0;
+    }
+    List<C> closeMes = clear(map);
+    if (closeMes.isEmpty()) {
+      // Short-cut nothing to do
+      return t0;
+    }
+    if (leaked) {
+      for (C closeMe : closeMes) {
+        forceClosed(closeMe, listener);
+      }
     }
     return AutoCloseables.closeAndCatch(t0, closeMes);
   }
 
   /**
-   * Closes all tracked objects in the given map.  Synchronizes on access to the map, and clears the map before
-   * closing the tracked objects.
+   * Closes all tracked objects in the given list, which have already been removed from tracking, such as by
+   * {@link #drainChildren(com.aoapps.sql.tracker.TrackedType, com.aoapps.sql.tracker.TrackedChildren)}.  Each object
+   * is removed before being closed, so each object is closed once even when concurrently closed or cleared.
    *
    * <p>When non-zero number of objects to close, logs the number at level {@link Level#FINE} and a list of objects at
-   * level {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL}.</p>
+   * level {@link AllocationStacktraceProvider#ALLOCATION_STACKTRACE_LOG_LEVEL}.  Objects with a
+   * {@linkplain AllocationStacktraces sampled} stack trace are also logged at level {@link Level#FINE}.</p>
    *
    * @return  The result of all throwables merged via {@link Throwables#addSuppressed(java.lang.Throwable, java.lang.Throwable)}
    */
-  @SuppressWarnings("unchecked")
-  static <C extends AutoCloseable & AllocationStacktraceProvider> Throwable clearCloseAndCatch(
+  static <C extends AutoCloseable & AllocationStacktraceProvider> Throwable closeAndCatch(
       Throwable t0,
       Logger logger,
       Class<?> sourceClass,
       String sourceMethod,
       String field,
-      Map<?, C> tracked
+      List<C> closeMes
   ) {
-    List<C> closeMes;
-    synchronized (tracked) {
-      Collection<C> values = tracked.values();
-      if (values.isEmpty()) {
-        // Short-cut nothing to do
-        return t0;
-      }
-      closeMes = new ArrayList<>(values);
-      tracked.clear();
+    return closeAndCatch(t0, logger, sourceClass, sourceMethod, field, closeMes, false, null);
+  }
+
+  /**
+   * Counts an object as leaked and notifies the listener it is being force-closed.
+   */
+  private static void forceClosed(AllocationStacktraceProvider closeMe, TrackerListener listener) {
+    AllocationCallSite site = closeMe.getAllocationCallSite();
+    AllocationStacktraces.leaked(site);
+    if (listener != null) {
+      listener.forceClosed(site.getType(), closeMe);
+    }
+  }
+
+  /**
+   * Closes all tracked objects in the given list, which have already been removed from tracking.
+   *
+   * @param  leaked    Counts the objects as {@linkplain AllocationCallSite#getLeaked() leaked} before closing them
+   * @param  listener  When leaked, notified of each object as {@linkplain TrackerListener#forceClosed(com.aoapps.sql.tracker.TrackedType, java.lang.Object) force-closed},
+   *                   may be {@code null}
+   *
+   * @see  #closeAndCatch(java.lang.Throwable, java.util.logging.Logger, java.lang.Class, java.lang.String, java.lang.String, java.util.List)
+   */
+  private static <C extends AutoCloseable & AllocationStacktraceProvider> Throwable closeAndCatch(
+      Throwable t0,
+      Logger logger,
+      Class<?> sourceClass,
+      String sourceMethod,
+      String field,
+      List<C> closeMes,
+      boolean leaked,
+      TrackerListener listener
+  ) {
+    if (closeMes.isEmpty()) {
+      // Short-cut nothing to do
+      return t0;
     }
     int size = closeMes.size();
     assert size > 0;
+    if (leaked) {
+      for (int i = 0; i < size; i++) {
+        forceClosed(closeMes.get(i), listener);
+      }
+    }
     if (logger.isLoggable(Level.FINE)) {
       String sourceClassName = sourceClass.getName();
       assert ALLOCATION_STACKTRACE_LOG_LEVEL.intValue() < Level.FINE.intValue();
@@ -366,17 +627,26 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
               ALLOCATION_STACKTRACE_LOG_LEVEL, sourceClassName, sourceMethod,
               field + '[' + i + "]: Closing " + closeMe,
               closeMe.getAllocationStacktrace());
+        } else {
+          // Sampled stack traces are logged at the same level as the count
+          if (allocationLogger.isLoggable(Level.FINE)) {
+            Exception allocationStacktrace = closeMe.getAllocationStacktrace();
+            if (allocationStacktrace != null) {
+              allocationLogger.logp(
+                  Level.FINE, sourceClassName, sourceMethod,
+                  field + '[' + i + "]: Closing " + closeMe,
+                  allocationStacktrace);
+            }
+          }
         }
         t0 = AutoCloseables.closeAndCatch(t0, closeMe);
       }
+    } else {
+      t0 = AutoCloseables.closeAndCatch(t0, closeMes);
     }
     return t0;
   }
 
-  private static void clear(Map<?, ?> map) {
-    map.clear();
-  }
-
   static Throwable clearRunAndCatch(Throwable t0, Collection<? extends Runnable> runnables) {
     List<Runnable> runMes;
     synchronized (runnables) {
@@ -391,118 +661,178 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
   }
 
   /**
-   * Puts a value into the map when not null and not already in the map.
-   * When a new map entry is added, an onClose handler is registered that will remove that map entry on close.
+   * Runs the given onClose handlers, if any.  A {@code null} list, which has not yet been created, has nothing to run.
+   */
+  static Throwable runAndCatch(List<? extends Runnable> onCloseHandlers) {
+    return (onCloseHandlers == null) ? null : Runnables.runAndCatch(null, onCloseHandlers);
+  }
+
+  /**
+   * Stops tracking an object, called by the object itself on close/free.  Does nothing when the object is no longer
+   * tracked, such as when already closed or tracking cleared.
+   *
+   * @param  type     The type of tracked object
+   * @param  wrapped  The object wrapped by the tracker
+   * @param  tracker  The tracker, only removed when it is the tracker of {@code wrapped}
+   */
+  void untrack(TrackedType type, Object wrapped, Object tracker) {
+    Map<?, ?> map = trackedMaps.getIfPresent(type);
+    if (map != null) {
+      map.remove(wrapped, tracker);
+    }
+  }
+
+  /**
+   * Gets the tracker of an object obtained through another tracked object, setting its parent when not already owned.
+   * The tracker is only tracked by the connection, which finds any existing tracker for the same object.  An object
+   * obtained through more than one tracked object is a child of the first, and is closed along with it.
    *
    * @param  <Ex>  An arbitrary exception type that may be thrown
-   * @param  map          The mapping of tracked objects
-   * @param  wrapped      The object to find already tracked or retrieve new tracker
-   * @param  getTracker   Retrieves new tracker when wrapped is not already in the map
-   * @param  keyFunction  Gets the map key to use for the tracker obtained from {@code getTracker}
+   * @param  parent      The children of the object that {@code wrapped} was obtained through
+   * @param  wrapped     The object to get the tracker of
+   * @param  getTracker  Gets the tracker from the connection when {@code wrapped} is not {@code null}
+   * @param  setParent   Sets the parent of the tracker when not already owned
    *
-   * @return  The value, either obtained from the map or retrieved
+   * @return  The tracker or {@code null} when {@code wrapped} is {@code null}
    */
-  static <K, V extends OnCloseHandler, Ex extends Throwable> V getIfAbsent(
-      Map<K, V> map,
-      K wrapped,
+  static <V, Ex extends Throwable> V adopt(
+      TrackedChildren parent,
+      Object wrapped,
       CallableE<? extends V, ? extends Ex> getTracker,
-      Function<? super V, ? extends K> keyFunction
+      BiConsumer<? super V, ? super TrackedChildren> setParent
   ) throws Ex {
     if (wrapped != null) {
-      V tracker;
-      synchronized (map) {
-        tracker = map.get(wrapped);
-        if (tracker == null) {
-          V gotTracker = getTracker.call();
-          tracker = map.computeIfAbsent(
-              keyFunction.apply(gotTracker),
-              (K key) -> {
-                gotTracker.addOnClose(() -> map.remove(key, gotTracker));
-                return gotTracker;
-              }
-          );
-        } else {
-          assert keyFunction.apply(tracker) == wrapped : "tracker from map does not track the expected object";
-        }
-      }
+      V tracker = getTracker.call();
+      setParent.accept(tracker, parent);
       return tracker;
     } else {
       return null;
     }
   }
 
+  /**
+   * Gets a view of the children of a tracked object, limited to those still tracked by this connection.
+   *
+   * @param  type    The type of children
+   * @param  parent  The children of the tracked object
+   */
+  <K, V> Map<K, V> getTrackedChildren(TrackedType type, TrackedChildren parent) {
+    return parent.getView(trackedMaps, type);
+  }
+
+  /**
+   * Stops tracking the children of a tracked object, returning the children to be closed.  Only the children of the
+   * object are searched.
+   *
+   * @param  type    The type of children
+   * @param  parent  The children of the tracked object
+   *
+   * @return  The trackers removed or an empty, unmodifiable list when nothing removed.
+   */
+  <V> List<V> drainChildren(TrackedType type, TrackedChildren parent) {
+    if (parent.isEmpty()) {
+      // Short-cut no children
+      return Collections.emptyList();
+    }
+    Map<?, V> tracked = trackedMaps.getIfPresent(type);
+    return (tracked == null) ? Collections.emptyList() : parent.drain(tracked);
+  }
+
   /**
    * Puts a value into the map when not already in the map.
-   * When a new map entry is added, an onClose handler is registered that will remove that map entry on close.
+   * The tracker removes itself from the map on close.
+   *
+   * <p>The new tracker is created without holding any lock of the map, since its creation notifies
+   * {@linkplain TrackerListener listeners}.  When another thread tracks the same object first, the new tracker is
+   * discarded and the tracker of the other thread returned.</p>
    *
    * @param  map          The mapping of tracked objects
    * @param  thisTracker  Passed as the first argument to {@code trackerGenerator}
    * @param  wrapped      The object to find already tracked or generate a new tracker
    * @param  newTracker   Generates new tracker when wrapped is not already in the map
+   * @param  discard      Discards a new tracker that was not put into the map
    *
    * @return  The value, either obtained from the map or new
    */
-  static <T, K, V extends OnCloseHandler> V newIfAbsent(
+  static <T, K, V> V newIfAbsent(
       Map<K, V> map,
       T thisTracker,
       K wrapped,
-      BiFunction<? super T, ? super K, ? extends V> newTracker
+      BiFunction<? super T, ? super K, ? extends V> newTracker,
+      Consumer<? super V> discard
   ) {
-    return map.computeIfAbsent(
-        wrapped,
-        (K k) -> {
-          assert k == wrapped;
-          V tracker = newTracker.apply(thisTracker, k);
-          tracker.addOnClose(() -> map.remove(k, tracker));
-          return tracker;
-        }
-    );
+    V tracker = map.get(wrapped);
+    if (tracker == null) {
+      V created = newTracker.apply(thisTracker, wrapped);
+      tracker = map.putIfAbsent(wrapped, created);
+      if (tracker == null) {
+        tracker = created;
+      } else {
+        discard.accept(created);
+      }
+    }
+    return tracker;
   }
 
   /**
-   * See {@link ConnectionTrackerImpl#newIfAbsent(java.util.Map, java.lang.Object, java.lang.Object, java.util.function.BiFunction)}.
+   * See {@link ConnectionTrackerImpl#newIfAbsent(java.util.Map, java.lang.Object, java.lang.Object, java.util.function.BiFunction, java.util.function.Consumer)}.
    */
-  private <K, V extends OnCloseHandler> V newIfAbsent(
+  private <K, V extends AllocationStacktraceProvider> V newIfAbsent(
       Map<K, V> map,
       K wrapped,
       BiFunction<? super ConnectionTrackerImpl, ? super K, ? extends V> newTracker
   ) {
-    return newIfAbsent(map, this, wrapped, newTracker);
+    return newIfAbsent(map, this, wrapped, newTracker, this::discard);
+  }
+
+  /**
+   * Discards a tracker that lost the race to track an object to the tracker of another thread.  The tracker is counted
+   * as closed, without closing the object it wraps, which remains tracked by the other tracker.
+   */
+  final void discard(AllocationStacktraceProvider tracker) {
+    AllocationCallSite site = tracker.getAllocationCallSite();
+    AllocationStacktraces.closed(site, tracker.getAllocationTime());
+    fireClosed(site.getType(), tracker);
   }
 
   /**
    * Closes / frees all tracked objects except savepoints, which are expected to be closed by a following
-   * {@link ConnectionTrackerImpl#rollback()}.
+   * {@link ConnectionTrackerImpl#rollback()}.  The objects are counted as {@linkplain AllocationCallSite#getLeaked() leaked}.
    */
   @SuppressWarnings("unchecked")
   protected Throwable closeTracked(Throwable t0, String sourceMethod) {
+    if (trackedMaps.getCount() == 0) {
+      // Short-cut nothing to close
+      return t0;
+    }
+    TrackerListener l = listener;
     // Streams
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedInputStreams", trackedInputStreams);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedOutputStreams", trackedOutputStreams);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedReaders", trackedReaders);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedWriters", trackedWriters);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedInputStreams", clear(trackedMaps.getIfPresent(TrackedType.INPUT_STREAM)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedOutputStreams", clear(trackedMaps.getIfPresent(TrackedType.OUTPUT_STREAM)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedReaders", clear(trackedMaps.getIfPresent(TrackedType.READER)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedWriters", clear(trackedMaps.getIfPresent(TrackedType.WRITER)), true, l);
     // Types
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedArrays", trackedArrays);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedBlobs", trackedBlobs);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedClobs", trackedClobs);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedNClobs", trackedNClobs);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedRefs", trackedRefs);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedRowIds", trackedRowIds);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLXMLs", trackedSQLXMLs);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedStructs", trackedStructs);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedArrays", clear(trackedMaps.getIfPresent(TrackedType.ARRAY)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedBlobs", clear(trackedMaps.getIfPresent(TrackedType.BLOB)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedClobs", clear(trackedMaps.getIfPresent(TrackedType.CLOB)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedNClobs", clear(trackedMaps.getIfPresent(TrackedType.NCLOB)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedRefs", clear(trackedMaps.getIfPresent(TrackedType.REF)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedRowIds", clear(trackedMaps.getIfPresent(TrackedType.ROW_ID)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLXMLs", clear(trackedMaps.getIfPresent(TrackedType.SQLXML)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedStructs", clear(trackedMaps.getIfPresent(TrackedType.STRUCT)), true, l);
     // SQLData
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLDatas", trackedSQLDatas);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLInputs", trackedSQLInputs);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLOutputs", trackedSQLOutputs);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLDatas", clear(trackedMaps.getIfPresent(TrackedType.SQL_DATA)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLInputs", clear(trackedMaps.getIfPresent(TrackedType.SQL_INPUT)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedSQLOutputs", clear(trackedMaps.getIfPresent(TrackedType.SQL_OUTPUT)), true, l);
     // Meta datas
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedDatabaseMetaDatas", trackedDatabaseMetaDatas);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedParameterMetaDatas", trackedParameterMetaDatas);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedResultSetMetaDatas", trackedResultSetMetaDatas);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedDatabaseMetaDatas", clear(trackedMaps.getIfPresent(TrackedType.DATABASE_META_DATA)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedParameterMetaDatas", clear(trackedMaps.getIfPresent(TrackedType.PARAMETER_META_DATA)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedResultSetMetaDatas", clear(trackedMaps.getIfPresent(TrackedType.RESULT_SET_META_DATA)), true, l);
     // Statements and results
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedResultSets", trackedResultSets);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedCallableStatements", trackedCallableStatements);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedPreparedStatements", trackedPreparedStatements);
-    t0 = clearCloseAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedStatements", trackedStatements);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedResultSets", clear(trackedMaps.getIfPresent(TrackedType.RESULT_SET)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedCallableStatements", clear(trackedMaps.getIfPresent(TrackedType.CALLABLE_STATEMENT)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedPreparedStatements", clear(trackedMaps.getIfPresent(TrackedType.PREPARED_STATEMENT)), true, l);
+    t0 = closeAndCatch(t0, logger, ConnectionTrackerImpl.class, sourceMethod, "trackedStatements", clear(trackedMaps.getIfPresent(TrackedType.STATEMENT)), true, l);
     return t0;
   }
 
@@ -510,29 +840,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
    * Clears all tracking.
    */
   protected void clearTracking() {
-    clear(trackedArrays);
-    clear(trackedBlobs);
-    clear(trackedCallableStatements);
-    clear(trackedClobs);
-    clear(trackedDatabaseMetaDatas);
-    clear(trackedInputStreams);
-    clear(trackedNClobs);
-    clear(trackedOutputStreams);
-    clear(trackedParameterMetaDatas);
-    clear(trackedPreparedStatements);
-    clear(trackedReaders);
-    clear(trackedRefs);
-    clear(trackedResultSets);
-    clear(trackedResultSetMetaDatas);
-    clear(trackedRowIds);
-    clear(trackedSQLDatas);
-    clear(trackedSQLInputs);
-    clear(trackedSQLOutputs);
-    clear(trackedSQLXMLs);
-    clear(trackedSavepoints);
-    clear(trackedStatements);
-    clear(trackedStructs);
-    clear(trackedWriters);
+    trackedMaps.clearAll();
   }
 
   /**
@@ -540,6 +848,11 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
    */
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   protected Throwable releaseAllTrackedSavepoints(Throwable t0) {
+    Map<Savepoint, SavepointTrackerImpl> trackedSavepoints = trackedMaps.getIfPresent(TrackedType.SAVEPOINT);
+    if (trackedSavepoints == null) {
+      // Short-cut no savepoints ever tracked
+      return t0;
+    }
     List<SavepointTrackerImpl> savepoints;
     synchronized (trackedSavepoints) {
       savepoints = new ArrayList<>(trackedSavepoints.values());
@@ -557,119 +870,528 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
 
   @Override
   protected ArrayTrackerImpl newArrayWrapper(StatementWrapperImpl stmtWrapper, Array array) {
-    return newIfAbsent(trackedArrays, array, (conn, k) ->
+    return newIfAbsent(getTrackedArrays(), array, (conn, k) ->
         new ArrayTrackerImpl(conn, stmtWrapper, k));
   }
 
   @Override
   protected BlobTrackerImpl newBlobWrapper(Blob blob) {
-    return newIfAbsent(trackedBlobs, blob, BlobTrackerImpl::new);
+    return newIfAbsent(getTrackedBlobs(), blob, BlobTrackerImpl::new);
   }
 
   @Override
   protected CallableStatementTrackerImpl newCallableStatementWrapper(CallableStatement cstmt) {
-    return newIfAbsent(trackedCallableStatements, cstmt, CallableStatementTrackerImpl::new);
+    return newIfAbsent(getTrackedCallableStatements(), cstmt, CallableStatementTrackerImpl::new);
   }
 
   @Override
   protected ClobTrackerImpl newClobWrapper(Clob clob) {
-    return newIfAbsent(trackedClobs, clob, ClobTrackerImpl::new);
+    return newIfAbsent(getTrackedClobs(), clob, ClobTrackerImpl::new);
   }
 
   @Override
   protected DatabaseMetaDataTrackerImpl newDatabaseMetaDataWrapper(DatabaseMetaData metaData) {
-    return newIfAbsent(trackedDatabaseMetaDatas, metaData, DatabaseMetaDataTrackerImpl::new);
+    return newIfAbsent(getTrackedDatabaseMetaDatas(), metaData, DatabaseMetaDataTrackerImpl::new);
   }
 
   @Override
   protected InputStreamTracker newInputStreamWrapper(InputStream in) {
-    return newIfAbsent(trackedInputStreams, in, InputStreamTracker::new);
+    return newIfAbsent(getTrackedInputStreams(), in, InputStreamTracker::new);
   }
 
   @Override
   protected NClobTrackerImpl newNClobWrapper(NClob nclob) {
-    return newIfAbsent(trackedNClobs, nclob, NClobTrackerImpl::new);
+    return newIfAbsent(getTrackedNClobs(), nclob, NClobTrackerImpl::new);
   }
 
   @Override
   protected OutputStreamTracker newOutputStreamWrapper(OutputStream out) {
-    return newIfAbsent(trackedOutputStreams, out, OutputStreamTracker::new);
+    return newIfAbsent(getTrackedOutputStreams(), out, OutputStreamTracker::new);
   }
 
   @Override
   protected ParameterMetaDataTrackerImpl newParameterMetaDataWrapper(ParameterMetaData metaData) {
-    return newIfAbsent(trackedParameterMetaDatas, metaData, ParameterMetaDataTrackerImpl::new);
+    return newIfAbsent(getTrackedParameterMetaDatas(), metaData, ParameterMetaDataTrackerImpl::new);
   }
 
   @Override
   protected PreparedStatementTrackerImpl newPreparedStatementWrapper(PreparedStatement pstmt) {
-    return newIfAbsent(trackedPreparedStatements, pstmt, PreparedStatementTrackerImpl::new);
+    return newIfAbsent(getTrackedPreparedStatements(), pstmt, PreparedStatementTrackerImpl::new);
   }
 
   @Override
   protected ReaderTracker newReaderWrapper(Reader in) {
-    return newIfAbsent(trackedReaders, in, ReaderTracker::new);
+    return newIfAbsent(getTrackedReaders(), in, ReaderTracker::new);
   }
 
   @Override
   protected RefTrackerImpl newRefWrapper(Ref ref) {
-    return newIfAbsent(trackedRefs, ref, RefTrackerImpl::new);
+    return newIfAbsent(getTrackedRefs(), ref, RefTrackerImpl::new);
   }
 
   @Override
   protected ResultSetTrackerImpl newResultSetWrapper(StatementWrapperImpl stmtWrapper, ResultSet results) {
-    return newIfAbsent(trackedResultSets, results, (conn, k) ->
+    return newIfAbsent(getTrackedResultSets(), results, (conn, k) ->
         new ResultSetTrackerImpl(conn, stmtWrapper, k));
   }
 
   @Override
   protected ResultSetMetaDataTrackerImpl newResultSetMetaDataWrapper(ResultSetMetaData metaData) {
-    return newIfAbsent(trackedResultSetMetaDatas, metaData, ResultSetMetaDataTrackerImpl::new);
+    return newIfAbsent(getTrackedResultSetMetaDatas(), metaData, ResultSetMetaDataTrackerImpl::new);
   }
 
   @Override
   protected RowIdTrackerImpl newRowIdWrapper(RowId rowId) {
-    return newIfAbsent(trackedRowIds, rowId, RowIdTrackerImpl::new);
+    return newIfAbsent(getTrackedRowIds(), rowId, RowIdTrackerImpl::new);
   }
 
   @Override
   protected SQLDataTrackerImpl newSQLDataWrapper(SQLData sqlData) {
-    return newIfAbsent(trackedSQLDatas, sqlData, SQLDataTrackerImpl::new);
+    return newIfAbsent(getTrackedSQLDatas(), sqlData, SQLDataTrackerImpl::new);
   }
 
   @Override
   protected SQLInputTrackerImpl newSQLInputWrapper(SQLInput sqlInput) {
-    return newIfAbsent(trackedSQLInputs, sqlInput, SQLInputTrackerImpl::new);
+    return newIfAbsent(getTrackedSQLInputs(), sqlInput, SQLInputTrackerImpl::new);
   }
 
   @Override
   protected SQLOutputTrackerImpl newSQLOutputWrapper(SQLOutput sqlOutput) {
-    return newIfAbsent(trackedSQLOutputs, sqlOutput, SQLOutputTrackerImpl::new);
+    return newIfAbsent(getTrackedSQLOutputs(), sqlOutput, SQLOutputTrackerImpl::new);
   }
 
   @Override
   protected SQLXMLTrackerImpl newSQLXMLWrapper(SQLXML sqlXml) {
-    return newIfAbsent(trackedSQLXMLs, sqlXml, SQLXMLTrackerImpl::new);
+    return newIfAbsent(getTrackedSQLXMLs(), sqlXml, SQLXMLTrackerImpl::new);
   }
 
   @Override
   protected SavepointTrackerImpl newSavepointWrapper(Savepoint savepoint) {
-    return newIfAbsent(trackedSavepoints, savepoint, SavepointTrackerImpl::new);
+    return newIfAbsent(getTrackedSavepoints(), savepoint, SavepointTrackerImpl::new);
   }
 
   @Override
   protected StatementTrackerImpl newStatementWrapper(Statement stmt) {
-    return newIfAbsent(trackedStatements, stmt, StatementTrackerImpl::new);
+    return newIfAbsent(getTrackedStatements(), stmt, StatementTrackerImpl::new);
   }
 
   @Override
   protected StructTrackerImpl newStructWrapper(Struct struct) {
-    return newIfAbsent(trackedStructs, struct, StructTrackerImpl::new);
+    return newIfAbsent(getTrackedStructs(), struct, StructTrackerImpl::new);
   }
 
   @Override
   protected WriterTracker newWriterWrapper(Writer out) {
-    return newIfAbsent(trackedWriters, out, WriterTracker::new);
+    return newIfAbsent(getTrackedWriters(), out, WriterTracker::new);
+  }
+
+  /**
+   * Whether {@linkplain FetchSizeAdvisor adaptive fetch sizes} apply to this connection, or {@code null} until first
+   * checked against the {@linkplain FetchSizeAdvisor#setExcludedUrls(java.lang.String...) excluded URLs}.
+   */
+  private volatile Boolean adaptiveFetchSize;
+
+  /**
+   * Checks if {@linkplain FetchSizeAdvisor adaptive fetch sizes} apply to this connection.  Unless
+   * {@linkplain #setAdaptiveFetchSize(boolean) set}, determined on first use by whether the URL of the wrapped
+   * connection is {@linkplain FetchSizeAdvisor#setExcludedUrls(java.lang.String...) excluded}.
+   */
+  public final boolean isAdaptiveFetchSize() {
+    Boolean adaptive = adaptiveFetchSize;
+    if (adaptive == null) {
+      String url;
+      try {
+        url = getWrapped().getMetaData().getURL();
+      } catch (SQLException e) {
+        logger.log(Level.WARNING, "Unable to get URL, adaptive fetch sizes not excluded", e);
+        url = null;
+      }
+      adaptive = !FetchSizeAdvisor.isExcluded(url);
+      adaptiveFetchSize = adaptive;
+    }
+    return adaptive;
+  }
+
+  /**
+   * Opts this connection in or out of {@linkplain FetchSizeAdvisor adaptive fetch sizes}, overriding the
+   * {@linkplain FetchSizeAdvisor#setExcludedUrls(java.lang.String...) excluded URLs}.  Has no effect while
+   * {@linkplain FetchSizeAdvisor#setEnabled(boolean) disabled}.
+   */
+  public final void setAdaptiveFetchSize(boolean adaptiveFetchSize) {
+    this.adaptiveFetchSize = adaptiveFetchSize;
+  }
+
+  /**
+   * The data read from the result sets of this connection, created on first use.
+   */
+  private ResultSetMeter.Usage resultSetUsage; // Guarded by this
+
+  /**
+   * Gets the data read from the result sets of this connection, while {@linkplain ResultSetMeter metering} is enabled.
+   */
+  public final synchronized ResultSetMeter.Usage getResultSetUsage() {
+    if (resultSetUsage == null) {
+      resultSetUsage = new ResultSetMeter.Usage();
+    }
+    return resultSetUsage;
+  }
+
+  /**
+   * Whether to cancel the statement of result sets closed before being read to the end.
+   */
+  private volatile boolean cancelUnexhausted;
+
+  /**
+   * Checks if canceling the statement of result sets closed before being read to the end.
+   *
+   * @see  #setCancelUnexhausted(boolean)
+   */
+  public final boolean isCancelUnexhausted() {
+    return cancelUnexhausted;
+  }
+
+  /**
+   * Enables or disables canceling the statement of result sets closed before {@link ResultSet#next()} returns
+   * {@code false}, including when closed along with their statement or this connection.
+   *
+   * <p>Some drivers, such as MySQL in streaming mode and PostgreSQL with a cursor, read all remaining rows when a
+   * result set is closed early, which can take a long time for large results.  Canceling the statement first stops
+   * the server from sending the remaining rows.</p>
+   *
+   * <p>Only the results of queries, from {@code executeQuery} or {@code getResultSet}, are canceled.  Generated keys,
+   * metadata, and results known to have been read to the end, such as by {@link ResultSet#isLast()} or the
+   * {@linkplain Statement#setMaxRows(int) maximum rows} of the statement, are closed without canceling.</p>
+   *
+   * <p>Only enable for drivers that cancel synchronously.  A driver that sends the cancel request asynchronously, such
+   * as PostgreSQL, may cancel a later statement executed on this connection instead.</p>
+   *
+   * <p>{@link Statement#cancel()} cancels whatever the statement is currently executing, not a specific result set.
+   * A result set already closed by the driver, because its statement executed again, does not cancel.  However, a
+   * result set closed by one thread while another thread executes its statement again, which the JDBC API does not
+   * support, may cancel that execution.</p>
+   *
+   * @see  DriverTracker#setCancelUnexhausted(boolean)
+   */
+  public final void setCancelUnexhausted(boolean cancelUnexhausted) {
+    this.cancelUnexhausted = cancelUnexhausted;
+  }
+
+  /**
+   * Whether result sets release the values obtained from a row on moving to another row.
+   */
+  private volatile boolean rowScoped;
+
+  /**
+   * Checks if result sets release the values obtained from a row on moving to another row.
+   *
+   * @see  #setRowScoped(boolean)
+   */
+  public final boolean isRowScoped() {
+    return rowScoped;
+  }
+
+  /**
+   * Enables or disables result sets releasing the values obtained from a row on moving to another row, taking effect
+   * for result sets obtained afterwards.
+   *
+   * <p>When enabled, the {@linkplain Blob blobs}, {@linkplain Clob clobs}, {@linkplain NClob nclobs},
+   * {@linkplain SQLXML SQLXML}, streams, and readers obtained from the current row are freed or closed on
+   * {@link ResultSet#next()}, {@link ResultSet#previous()}, {@link ResultSet#first()}, {@link ResultSet#last()},
+   * {@link ResultSet#beforeFirst()}, {@link ResultSet#afterLast()}, {@link ResultSet#absolute(int)}, and
+   * {@link ResultSet#relative(int)}.  This keeps memory and server-side LOB use flat while reading large results, but
+   * the values must not be used after moving to another row.</p>
+   *
+   * @see  DriverTracker#setRowScoped(boolean)
+   */
+  public final void setRowScoped(boolean rowScoped) {
+    this.rowScoped = rowScoped;
+  }
+
+  /**
+   * The maximum number of statements cached, or {@code 0} when disabled.
+   */
+  private volatile int statementCacheSize;
+
+  /**
+   * The statement cache, created on first use.
+   */
+  private StatementCache statementCache; // Guarded by this
+
+  /**
+   * Whether the statement cache has been closed, once this connection is closed.
+   */
+  private boolean statementCacheClosed; // Guarded by this
+
+  /**
+   * Gets the maximum number of prepared and callable statements cached by this connection.
+   *
+   * @return  The maximum number of statements or {@code 0} when statement caching is disabled
+   *
+   * @see  DriverTracker#getStatementCacheSize()
+   */
+  public final int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /**
+   * Sets the maximum number of prepared and callable statements cached by this connection.  Least recently used
+   * statements are closed when the cache is full.
+   *
+   * <p>When enabled, closing a prepared or callable statement returns its wrapped statement to the cache instead of
+   * closing it, and preparing the same SQL with the same options reuses the wrapped statement.  Statements with any
+   * statement-level setting changed, such as {@link Statement#setMaxRows(int)}, are closed instead of cached.</p>
+   *
+   * @param  statementCacheSize  The maximum number of statements or {@code 0} to disable statement caching
+   *
+   * @see  DriverTracker#setStatementCacheSize(int)
+   */
+  public final void setStatementCacheSize(int statementCacheSize) throws SQLException {
+    if (statementCacheSize < 0) {
+      throw new IllegalArgumentException("statementCacheSize < 0: " + statementCacheSize);
+    }
+    StatementCache cache;
+    synchronized (this) {
+      this.statementCacheSize = statementCacheSize;
+      cache = statementCache;
+    }
+    if (cache != null) {
+      Throwable t0 = cache.setMaxSize(null, statementCacheSize);
+      if (t0 != null) {
+        throw Throwables.wrap(t0, SQLException.class, SQLException::new);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of times a statement has been reused from the statement cache.
+   */
+  public final long getStatementCacheHitCount() {
+    StatementCache cache;
+    synchronized (this) {
+      cache = statementCache;
+    }
+    return (cache == null) ? 0 : cache.getHitCount();
+  }
+
+  /**
+   * Gets the number of times a statement has been prepared while statement caching is enabled.
+   */
+  public final long getStatementCacheMissCount() {
+    StatementCache cache;
+    synchronized (this) {
+      cache = statementCache;
+    }
+    return (cache == null) ? 0 : cache.getMissCount();
+  }
+
+  /**
+   * Gets the number of statements closed to keep the statement cache within its maximum size.
+   */
+  public final long getStatementCacheEvictionCount() {
+    StatementCache cache;
+    synchronized (this) {
+      cache = statementCache;
+    }
+    return (cache == null) ? 0 : cache.getEvictionCount();
+  }
+
+  /**
+   * Gets the statement cache, creating it on first use.
+   *
+   * @return  The statement cache or {@code null} when this connection is closed
+   */
+  private synchronized StatementCache getStatementCache() {
+    if (statementCache == null && !statementCacheClosed) {
+      statementCache = new StatementCache(driver, statementCacheSize);
+    }
+    return statementCache;
+  }
+
+  /**
+   * Gets the statement cache key.
+   *
+   * @return  The key or {@code null} when statement caching is disabled
+   */
+  private StatementCache.Key cacheKey(
+      boolean callable,
+      String sql,
+      int resultSetType,
+      int resultSetConcurrency,
+      int resultSetHoldability,
+      int autoGeneratedKeys,
+      int[] columnIndexes,
+      String[] columnNames
+  ) {
+    if (statementCacheSize == 0 || sql == null) {
+      return null;
+    }
+    return new StatementCache.Key(
+        callable,
+        sql,
+        resultSetType,
+        resultSetConcurrency,
+        resultSetHoldability,
+        autoGeneratedKeys,
+        columnIndexes,
+        columnNames
+    );
+  }
+
+  /**
+   * Takes a statement from the statement cache.
+   *
+   * @return  The wrapped statement or {@code null} when not cached
+   */
+  private PreparedStatement takeStatement(StatementCache.Key key) {
+    if (key == null) {
+      return null;
+    }
+    StatementCache cache = getStatementCache();
+    return (cache == null) ? null : cache.take(key);
+  }
+
+  /**
+   * Returns the wrapped statement of a closed prepared or callable statement to the statement cache, or closes it
+   * when statement caching has since been disabled or this connection closed.
+   *
+   * @see  PreparedStatementTrackerImpl#close()
+   * @see  CallableStatementTrackerImpl#close()
+   */
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  final Throwable releaseStatement(Throwable t0, StatementCache.Key key, PreparedStatement pstmt) {
+    StatementCache cache = getStatementCache();
+    if (cache != null) {
+      return cache.release(t0, key, pstmt);
+    }
+    try {
+      pstmt.close();
+    } catch (Throwable t) {
+      t0 = Throwables.addSuppressed(t0, t);
+    }
+    return t0;
+  }
+
+  /**
+   * Sets the SQL and statement cache key of a prepared statement, for reporting of its executions and its return to
+   * the statement cache.
+   */
+  private static PreparedStatementTrackerImpl prepared(PreparedStatementTrackerImpl pstmt, String sql, StatementCache.Key key) {
+    if (pstmt != null) {
+      pstmt.setSql(sql);
+      pstmt.setCacheKey(key);
+    }
+    return pstmt;
+  }
+
+  /**
+   * Sets the SQL and statement cache key of a callable statement, for reporting of its executions and its return to
+   * the statement cache.
+   */
+  private static CallableStatementTrackerImpl prepared(CallableStatementTrackerImpl cstmt, String sql, StatementCache.Key key) {
+    if (cstmt != null) {
+      cstmt.setSql(sql);
+      cstmt.setCacheKey(key);
+    }
+    return cstmt;
+  }
+
+  @Override
+  public PreparedStatementTrackerImpl prepareStatement(String sql) throws SQLException {
+    StatementCache.Key key = cacheKey(false, sql, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, null, null);
+    PreparedStatement cached = takeStatement(key);
+    return prepared(
+        (cached != null) ? newPreparedStatementWrapper(cached) : (PreparedStatementTrackerImpl) super.prepareStatement(sql),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public PreparedStatementTrackerImpl prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    StatementCache.Key key = cacheKey(false, sql, resultSetType, resultSetConcurrency, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, null, null);
+    PreparedStatement cached = takeStatement(key);
+    return prepared(
+        (cached != null) ? newPreparedStatementWrapper(cached) : (PreparedStatementTrackerImpl) super.prepareStatement(sql, resultSetType, resultSetConcurrency),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public PreparedStatementTrackerImpl prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    StatementCache.Key key = cacheKey(false, sql, resultSetType, resultSetConcurrency, resultSetHoldability, StatementCache.Key.UNSPECIFIED, null, null);
+    PreparedStatement cached = takeStatement(key);
+    return prepared(
+        (cached != null) ? newPreparedStatementWrapper(cached) : (PreparedStatementTrackerImpl) super.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public PreparedStatementTrackerImpl prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+    StatementCache.Key key = cacheKey(false, sql, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, autoGeneratedKeys, null, null);
+    PreparedStatement cached = takeStatement(key);
+    return prepared(
+        (cached != null) ? newPreparedStatementWrapper(cached) : (PreparedStatementTrackerImpl) super.prepareStatement(sql, autoGeneratedKeys),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public PreparedStatementTrackerImpl prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+    StatementCache.Key key = cacheKey(false, sql, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, columnIndexes, null);
+    PreparedStatement cached = takeStatement(key);
+    return prepared(
+        (cached != null) ? newPreparedStatementWrapper(cached) : (PreparedStatementTrackerImpl) super.prepareStatement(sql, columnIndexes),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public PreparedStatementTrackerImpl prepareStatement(String sql, String[] columnNames) throws SQLException {
+    StatementCache.Key key = cacheKey(false, sql, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, null, columnNames);
+    PreparedStatement cached = takeStatement(key);
+    return prepared(
+        (cached != null) ? newPreparedStatementWrapper(cached) : (PreparedStatementTrackerImpl) super.prepareStatement(sql, columnNames),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public CallableStatementTrackerImpl prepareCall(String sql) throws SQLException {
+    StatementCache.Key key = cacheKey(true, sql, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, null, null);
+    CallableStatement cached = (CallableStatement) takeStatement(key);
+    return prepared(
+        (cached != null) ? newCallableStatementWrapper(cached) : (CallableStatementTrackerImpl) super.prepareCall(sql),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public CallableStatementTrackerImpl prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+    StatementCache.Key key = cacheKey(true, sql, resultSetType, resultSetConcurrency, StatementCache.Key.UNSPECIFIED, StatementCache.Key.UNSPECIFIED, null, null);
+    CallableStatement cached = (CallableStatement) takeStatement(key);
+    return prepared(
+        (cached != null) ? newCallableStatementWrapper(cached) : (CallableStatementTrackerImpl) super.prepareCall(sql, resultSetType, resultSetConcurrency),
+        sql,
+        key
+    );
+  }
+
+  @Override
+  public CallableStatementTrackerImpl prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    StatementCache.Key key = cacheKey(true, sql, resultSetType, resultSetConcurrency, resultSetHoldability, StatementCache.Key.UNSPECIFIED, null, null);
+    CallableStatement cached = (CallableStatement) takeStatement(key);
+    return prepared(
+        (cached != null) ? newCallableStatementWrapper(cached) : (CallableStatementTrackerImpl) super.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+        sql,
+        key
+    );
   }
 
   /**
@@ -690,6 +1412,13 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
     } catch (Throwable t) {
       t0 = Throwables.addSuppressed(t0, t);
     }
+    if (autoCommit) {
+      endTransaction(false);
+    } else {
+      synchronized (this) {
+        inTransaction = true;
+      }
+    }
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
     }
@@ -711,6 +1440,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
     } catch (Throwable t) {
       t0 = Throwables.addSuppressed(t0, t);
     }
+    endTransaction(true);
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
     }
@@ -732,6 +1462,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
     } catch (Throwable t) {
       t0 = Throwables.addSuppressed(t0, t);
     }
+    endTransaction(true);
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
     }
@@ -748,9 +1479,27 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void close() throws SQLException {
-    Throwable t0 = clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
+    // Close cached statements, and any statements closed from here on
+    StatementCache cache;
+    synchronized (this) {
+      statementCacheClosed = true;
+      cache = statementCache;
+    }
+    if (cache != null) {
+      t0 = cache.close(t0);
+    }
     // Close tracked objects
-    t0 = closeTracked(t0, "close()");
+    int sweepCount = trackedMaps.getCount();
+    if (sweepCount != 0) {
+      Object sweepEvent = TrackerEvents.INSTANCE.sweepBegin();
+      long sweepStart = System.nanoTime();
+      t0 = closeTracked(t0, "close()");
+      if (driver != null) {
+        driver.swept(sweepCount, System.nanoTime() - sweepStart);
+      }
+      TrackerEvents.INSTANCE.sweepEnd(sweepEvent, sweepCount);
+    }
     // Rollback any transaction in-progress and put back in auto-commit mode
     try {
       if (!isClosed() && !getAutoCommit()) {
@@ -761,7 +1510,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
       t0 = Throwables.addSuppressed(t0, t);
     }
     // Any savepoints not removed on rollback()
-    t0 = clearCloseAndCatch(t0, trackedSavepoints);
+    t0 = clearCloseAndCatch(t0, trackedMaps.getIfPresent(TrackedType.SAVEPOINT));
     try {
       doClose();
     } catch (Throwable t) {
@@ -780,9 +1529,11 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void rollback(Savepoint savepoint) throws SQLException {
+    Object savepointEvent = TrackerEvents.INSTANCE.savepointBegin();
     // Release tracked objects
     // Call onRelease for all that follow the given savepoint
     SavepointTrackerImpl savepointTracker = (SavepointTrackerImpl) wrapSavepoint(savepoint);
+    Map<Savepoint, SavepointTrackerImpl> trackedSavepoints = getTrackedSavepoints();
     List<SavepointTrackerImpl> toRelease = new ArrayList<>();
     synchronized (trackedSavepoints) {
       Iterator<SavepointTrackerImpl> iter = trackedSavepoints.values().iterator();
@@ -811,6 +1562,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
     } catch (Throwable t) {
       t0 = Throwables.addSuppressed(t0, t);
     }
+    TrackerEvents.INSTANCE.savepointEnd(savepointEvent, "rollback", toRelease.size());
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
     }
@@ -825,9 +1577,11 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    Object savepointEvent = TrackerEvents.INSTANCE.savepointBegin();
     // Release tracked objects
     // Call onRelease for the given savepoint and all that follow
     SavepointTrackerImpl savepointTracker = (SavepointTrackerImpl) wrapSavepoint(savepoint);
+    Map<Savepoint, SavepointTrackerImpl> trackedSavepoints = getTrackedSavepoints();
     List<SavepointTrackerImpl> toRelease = new ArrayList<>();
     synchronized (trackedSavepoints) {
       Iterator<SavepointTrackerImpl> iter = trackedSavepoints.values().iterator();
@@ -860,6 +1614,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
     } catch (Throwable t) {
       t0 = Throwables.addSuppressed(t0, t);
     }
+    TrackerEvents.INSTANCE.savepointEnd(savepointEvent, "releaseSavepoint", toRelease.size());
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
     }
@@ -876,7 +1631,7 @@ public class ConnectionTrackerImpl extends ConnectionWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void abort(Executor executor) throws SQLException {
-    Throwable t0 = clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     clearTracking();
     try {
       doAbort(executor);
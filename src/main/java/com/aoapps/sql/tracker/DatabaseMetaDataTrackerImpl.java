@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,16 +23,13 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
+import com.aoapps.lang.AutoCloseables;
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.DatabaseMetaDataWrapperImpl;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -47,23 +44,36 @@ public class DatabaseMetaDataTrackerImpl extends DatabaseMetaDataWrapperImpl
 
   private static final Logger logger = Logger.getLogger(DatabaseMetaDataTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link DatabaseMetaData} tracker.
    */
   public DatabaseMetaDataTrackerImpl(ConnectionTrackerImpl connectionTracker, DatabaseMetaData wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.DATABASE_META_DATA, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.DATABASE_META_DATA, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -71,26 +81,59 @@ public class DatabaseMetaDataTrackerImpl extends DatabaseMetaDataWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<ResultSet, ResultSetTrackerImpl> trackedResultSets = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.DATABASE_META_DATA, this);
+    }
+    connectionTracker.untrack(TrackedType.DATABASE_META_DATA, getWrapped(), this);
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * The objects obtained through this meta data, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSet, ResultSetTrackerImpl> getTrackedResultSets() {
-    return trackedResultSets;
+    return connectionTracker.getTrackedChildren(TrackedType.RESULT_SET, children);
   }
 
   @Override
   protected ResultSetTrackerImpl wrapResultSet(ResultSet results) throws SQLException {
-    return ConnectionTrackerImpl.getIfAbsent(trackedResultSets, results,
+    return ConnectionTrackerImpl.adopt(children, results,
         () -> (ResultSetTrackerImpl) super.wrapResultSet(results),
-        ResultSetTrackerImpl::getWrapped
+        ResultSetTrackerImpl::setParent
     );
   }
 
@@ -102,9 +145,11 @@ public class DatabaseMetaDataTrackerImpl extends DatabaseMetaDataWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void close() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, trackedResultSets);
+    if (!children.isEmpty()) {
+      t0 = AutoCloseables.closeAndCatch(t0, connectionTracker.drainChildren(TrackedType.RESULT_SET, children));
+    }
     try {
       super.close();
     } catch (Throwable t) {
@@ -0,0 +1,44 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent map of tracked objects that may be emptied without locking the whole map.
+ *
+ * @author  AO Industries, Inc.
+ */
+interface DrainableMap<K, V> extends ConcurrentMap<K, V> {
+
+  /**
+   * Removes all mappings, returning the values removed.  Each value is only returned by the thread that removed it, so
+   * concurrent removals and drains never see the same value twice.
+   *
+   * @return  The values removed or an empty, unmodifiable list when nothing removed.
+   */
+  List<V> drain();
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022, 2025  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2025, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,7 +27,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ServiceLoader;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
 
 /**
  * A registered driver that tracks {@linkplain Connection connections} obtained from other {@linkplain Driver drivers}
@@ -51,6 +53,7 @@ public class Driver extends DriverTracker {
 
   /**
    * Registers the driver if not yet already registered.  This is done automatically during class initialization.
+   * Also {@linkplain #registerMBean() registers its MBean}.
    *
    * @return  {@code true} when an new driver instance is registered, or {@code false} when already registered.
    *
@@ -61,6 +64,11 @@ public class Driver extends DriverTracker {
       Driver d = new Driver();
       DriverManager.registerDriver(d, d::onDeregister);
       registered = d;
+      try {
+        d.registerMBean();
+      } catch (JMException | RuntimeException e) {
+        PARENT_LOGGER.log(Level.WARNING, "Unable to register MBean", e);
+      }
       return true;
     } else {
       return false;
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,25 +23,31 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.DriverWrapper;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 /**
  * Tracks {@linkplain Connection connections} obtained from other {@linkplain Driver drivers} for unclosed or unfreed
  * objects.
  *
+ * @see  DriverTrackerMXBean
+ *
  * @author  AO Industries, Inc.
  */
 public abstract class DriverTracker extends DriverWrapper implements OnCloseHandler {
@@ -62,23 +68,381 @@ public abstract class DriverTracker extends DriverWrapper implements OnCloseHand
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<Connection, ConnectionTrackerImpl> trackedConnections = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Shared by every thread obtaining or closing connections through this driver, so is a concurrent map.  This avoids
+   * contention on a single JVM-wide lock during pool warm-up and connection storms.
+   */
+  private final ConcurrentIdentityMap<Connection, ConnectionTrackerImpl> trackedConnections = new ConcurrentIdentityMap<>();
 
   /**
    * Gets all the connections that have not yet been closed.
    *
+   * <p>This is a concurrent map.  Iteration is weakly consistent and never throws
+   * {@link java.util.ConcurrentModificationException}, but may or may not reflect connections opened or closed during
+   * iteration.</p>
+   *
    * @return  The mapping from wrapped connection to tracker without any defensive copy.
    *
    * @see  ConnectionTrackerImpl#close()
+   * @see  #getTrackedConnectionsSnapshot()
    */
   @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Connection, ConnectionTrackerImpl> getTrackedConnections() {
     return trackedConnections;
   }
 
+  /**
+   * Gets a copy of all the connections that have not yet been closed.
+   *
+   * @return  The mapping from wrapped connection to tracker, copied into a new identity map that is not affected by
+   *          connections opened or closed afterwards.
+   *
+   * @see  #getTrackedConnections()
+   */
+  public final Map<Connection, ConnectionTrackerImpl> getTrackedConnectionsSnapshot() {
+    return trackedConnections.snapshot();
+  }
+
+  /**
+   * The system property that enables {@linkplain #setCleanAbandoned(boolean) closing abandoned connections} by
+   * default.
+   */
+  public static final String CLEAN_ABANDONED_PROPERTY = DriverTracker.class.getName() + ".cleanAbandoned";
+
+  private volatile boolean cleanAbandoned = Boolean.getBoolean(CLEAN_ABANDONED_PROPERTY);
+
+  /**
+   * Checks if closing connections that become unreachable without being closed.
+   *
+   * @see  #setCleanAbandoned(boolean)
+   */
+  public final boolean isCleanAbandoned() {
+    return cleanAbandoned;
+  }
+
+  /**
+   * Enables or disables closing connections that become unreachable without being closed, taking effect for
+   * connections obtained afterwards.  Disabled by default, or enabled by the system property
+   * <code>com.aoapps.sql.tracker.DriverTracker.cleanAbandoned</code>.
+   *
+   * <p>When enabled, connections are referenced weakly and registered with a {@link java.lang.ref.Cleaner}.  A
+   * connection that becomes unreachable is closed, along with its statements and result sets, and logged with its
+   * {@linkplain AllocationStacktraces allocation call site}.  These connections are not included in
+   * {@link #getTrackedConnections()}, which would otherwise keep them reachable.</p>
+   */
+  public final void setCleanAbandoned(boolean cleanAbandoned) {
+    this.cleanAbandoned = cleanAbandoned;
+  }
+
+  /**
+   * The system property that sets the default {@linkplain #setStatementCacheSize(int) statement cache size}.
+   */
+  public static final String STATEMENT_CACHE_SIZE_PROPERTY = DriverTracker.class.getName() + ".statementCacheSize";
+
+  private volatile int statementCacheSize = Math.max(0, Integer.getInteger(STATEMENT_CACHE_SIZE_PROPERTY, 0));
+
+  /**
+   * Gets the maximum number of prepared and callable statements cached per connection.
+   *
+   * @see  #setStatementCacheSize(int)
+   */
+  public final int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /**
+   * Sets the maximum number of prepared and callable statements cached per connection, taking effect for connections
+   * obtained afterwards.  Disabled ({@code 0}) by default, or set by the system property
+   * <code>com.aoapps.sql.tracker.DriverTracker.statementCacheSize</code>.
+   *
+   * @param  statementCacheSize  The maximum number of statements or {@code 0} to disable statement caching
+   *
+   * @see  ConnectionTrackerImpl#setStatementCacheSize(int)
+   */
+  public final void setStatementCacheSize(int statementCacheSize) {
+    if (statementCacheSize < 0) {
+      throw new IllegalArgumentException("statementCacheSize < 0: " + statementCacheSize);
+    }
+    this.statementCacheSize = statementCacheSize;
+  }
+
+  /**
+   * The system property that enables {@linkplain #setCancelUnexhausted(boolean) canceling unexhausted result sets} by
+   * default.
+   */
+  public static final String CANCEL_UNEXHAUSTED_PROPERTY = DriverTracker.class.getName() + ".cancelUnexhausted";
+
+  private volatile boolean cancelUnexhausted = Boolean.getBoolean(CANCEL_UNEXHAUSTED_PROPERTY);
+
+  /**
+   * Checks if canceling the statement of result sets closed before being read to the end.
+   *
+   * @see  #setCancelUnexhausted(boolean)
+   */
+  public final boolean isCancelUnexhausted() {
+    return cancelUnexhausted;
+  }
+
+  /**
+   * Enables or disables canceling the statement of result sets closed before being read to the end, taking effect
+   * for connections obtained afterwards.  Disabled by default, or enabled by the system property
+   * <code>com.aoapps.sql.tracker.DriverTracker.cancelUnexhausted</code>.
+   *
+   * @see  ConnectionTrackerImpl#setCancelUnexhausted(boolean)
+   */
+  public final void setCancelUnexhausted(boolean cancelUnexhausted) {
+    this.cancelUnexhausted = cancelUnexhausted;
+  }
+
+  /**
+   * The system property that enables {@linkplain #setRowScoped(boolean) row-scoped values} by default.
+   */
+  public static final String ROW_SCOPED_PROPERTY = DriverTracker.class.getName() + ".rowScoped";
+
+  private volatile boolean rowScoped = Boolean.getBoolean(ROW_SCOPED_PROPERTY);
+
+  /**
+   * Checks if result sets release the values obtained from a row on moving to another row.
+   *
+   * @see  #setRowScoped(boolean)
+   */
+  public final boolean isRowScoped() {
+    return rowScoped;
+  }
+
+  /**
+   * Enables or disables result sets releasing the LOBs, SQLXML, streams, and readers obtained from a row on moving to
+   * another row, taking effect for connections obtained afterwards.  Disabled by default, or enabled by the system
+   * property <code>com.aoapps.sql.tracker.DriverTracker.rowScoped</code>.
+   *
+   * @see  ConnectionTrackerImpl#setRowScoped(boolean)
+   */
+  public final void setRowScoped(boolean rowScoped) {
+    this.rowScoped = rowScoped;
+  }
+
+  /**
+   * The connections referenced weakly when {@linkplain #setCleanAbandoned(boolean) closing abandoned connections}.
+   */
+  private final ConcurrentIdentityMap<Connection, AbandonedConnection> abandonableConnections = new ConcurrentIdentityMap<>();
+
+  /**
+   * Removes an abandoned connection, called by the cleaner.
+   *
+   * @return  {@code true} when removed, or {@code false} when the connection has already been closed
+   */
+  boolean removeAbandonable(Connection wrapped, AbandonedConnection abandoned) {
+    return abandonableConnections.remove(wrapped, abandoned);
+  }
+
+  /**
+   * The listeners registered on this driver.
+   */
+  private final TrackerListeners listeners = new TrackerListeners();
+
+  /**
+   * The listeners of the JVM and this driver combined, or {@code null} when there are none.
+   */
+  private volatile TrackerListener listener = TrackerListeners.combine(listeners);
+
+  /**
+   * Adds a listener to this driver and all its connections, including those already open, in addition to any
+   * listeners of the JVM.
+   *
+   * @return  {@code true} when added or {@code false} when already registered
+   *
+   * @see  ConnectionTrackerImpl#addListener(com.aoapps.sql.tracker.TrackerListener)
+   */
+  public final boolean addListener(TrackerListener listener) {
+    if (listeners.add(listener)) {
+      updateListener();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Removes a listener from this driver and all its connections.
+   *
+   * @return  {@code true} when removed or {@code false} when not registered
+   */
+  public final boolean removeListener(TrackerListener listener) {
+    if (listeners.remove(listener)) {
+      updateListener();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  private void updateListener() {
+    synchronized (listeners) {
+      listener = TrackerListeners.combine(listeners);
+    }
+    forEachConnection(ConnectionTrackerImpl::updateListener);
+  }
+
+  /**
+   * Gets the listeners registered on this driver.
+   */
+  TrackerListeners getListeners() {
+    return listeners;
+  }
+
+  /**
+   * Performs the given action for each connection that has not yet been closed, including those
+   * {@linkplain #setCleanAbandoned(boolean) referenced weakly}.  Iterates without locking.
+   */
+  void forEachConnection(Consumer<? super ConnectionTrackerImpl> action) {
+    for (ConnectionTrackerImpl tracker : trackedConnections.values()) {
+      action.accept(tracker);
+    }
+    for (AbandonedConnection abandoned : abandonableConnections.values()) {
+      ConnectionTrackerImpl tracker = abandoned.getTracker();
+      if (tracker != null) {
+        action.accept(tracker);
+      }
+    }
+  }
+
+  private final LongAdder sweepCount = new LongAdder();
+  private final LongAdder sweptObjectCount = new LongAdder();
+  private final LongAdder sweepTime = new LongAdder();
+  private final LongAccumulator maxSweepTime = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records the tracked objects closed by a connection when closed.
+   *
+   * @param  count  The number of objects closed
+   * @param  time   The time spent closing, in nanoseconds
+   */
+  void swept(int count, long time) {
+    sweepCount.increment();
+    sweptObjectCount.add(count);
+    sweepTime.add(time);
+    maxSweepTime.accumulate(time);
+  }
+
+  long getSweepCount() {
+    return sweepCount.sum();
+  }
+
+  long getSweptObjectCount() {
+    return sweptObjectCount.sum();
+  }
+
+  long getSweepTime() {
+    return sweepTime.sum();
+  }
+
+  long getMaxSweepTime() {
+    return maxSweepTime.get();
+  }
+
+  private final LongAdder statementCacheHitCount = new LongAdder();
+  private final LongAdder statementCacheMissCount = new LongAdder();
+  private final LongAdder statementCacheEvictionCount = new LongAdder();
+
+  /**
+   * Records a use of a connection's statement cache.
+   *
+   * @param  hit  Whether the statement was found in the cache
+   */
+  void statementCacheUsed(boolean hit) {
+    (hit ? statementCacheHitCount : statementCacheMissCount).increment();
+  }
+
+  /**
+   * Records statements evicted from a connection's statement cache.
+   */
+  void statementCacheEvicted(int count) {
+    statementCacheEvictionCount.add(count);
+  }
+
+  long getStatementCacheHitCount() {
+    return statementCacheHitCount.sum();
+  }
+
+  long getStatementCacheMissCount() {
+    return statementCacheMissCount.sum();
+  }
+
+  long getStatementCacheEvictionCount() {
+    return statementCacheEvictionCount.sum();
+  }
+
+  private ObjectName mBeanName; // Guarded by this
+
+  /**
+   * Gets the name to register the {@link DriverTrackerMXBean} as.
+   *
+   * <p>This default implementation uses the domain of this package, with a type of {@code DriverTracker} and the name
+   * of this class.</p>
+   *
+   * @see  #registerMBean()
+   */
+  protected ObjectName getMBeanName() throws MalformedObjectNameException {
+    return new ObjectName(
+        DriverTracker.class.getPackageName()
+            + ":type=" + DriverTracker.class.getSimpleName()
+            + ",name=" + ObjectName.quote(getClass().getName()));
+  }
+
+  /**
+   * Registers a {@link DriverTrackerMXBean} for this driver with the platform MBean server, if not already registered.
+   * The MBean is unregistered when this driver is deregistered.
+   *
+   * @see  #getMBeanName()
+   * @see  #unregisterMBean()
+   */
+  public final synchronized void registerMBean() throws JMException {
+    if (mBeanName == null) {
+      ObjectName name = getMBeanName();
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new DriverTrackerMXBeanImpl(this), name);
+      mBeanName = name;
+    }
+  }
+
+  /**
+   * Unregisters the {@link DriverTrackerMXBean} of this driver, if registered.
+   *
+   * @see  #registerMBean()
+   */
+  public final synchronized void unregisterMBean() throws JMException {
+    if (mBeanName != null) {
+      ObjectName name = mBeanName;
+      mBeanName = null;
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+  }
+
+  /**
+   * Stops tracking a connection, called by the connection itself on close or abort.
+   */
+  void untrack(Connection wrapped, ConnectionTrackerImpl tracker) {
+    if (!trackedConnections.remove(wrapped, tracker)) {
+      AbandonedConnection abandoned = abandonableConnections.get(wrapped);
+      if (abandoned != null && abandoned.isTracker(tracker) && abandonableConnections.remove(wrapped, abandoned)) {
+        abandoned.clean();
+      }
+    }
+  }
+
   @Override
   protected ConnectionTrackerImpl newConnectionWrapper(Connection connection) {
-    return ConnectionTrackerImpl.newIfAbsent(trackedConnections, this, connection, ConnectionTrackerImpl::new);
+    if (cleanAbandoned) {
+      ConnectionTrackerImpl tracker = new ConnectionTrackerImpl(this, connection);
+      abandonableConnections.put(connection, AbandonedConnection.register(this, connection, tracker));
+      // Listeners added while the tracker was being created
+      tracker.updateListener();
+      return tracker;
+    }
+    ConnectionTrackerImpl tracker = ConnectionTrackerImpl.newIfAbsent(trackedConnections, this, connection, ConnectionTrackerImpl::new,
+        discarded -> discarded.discard(discarded));
+    // Listeners added while the tracker was being created
+    tracker.updateListener();
+    return tracker;
   }
 
   /**
@@ -90,7 +454,19 @@ public abstract class DriverTracker extends DriverWrapper implements OnCloseHand
   protected void onDeregister() {
     Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, trackedConnections);
+    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, trackedConnections, true, listener);
+    for (AbandonedConnection abandoned : abandonableConnections.drain()) {
+      try {
+        abandoned.close();
+      } catch (Throwable t) {
+        t0 = Throwables.addSuppressed(t0, t);
+      }
+    }
+    try {
+      unregisterMBean();
+    } catch (Throwable t) {
+      t0 = Throwables.addSuppressed(t0, t);
+    }
     try {
       super.onDeregister();
     } catch (Throwable t) {
@@ -0,0 +1,112 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.Map;
+
+/**
+ * Monitors the objects tracked by a {@link DriverTracker}, such as the build-up of open result sets before the database
+ * reaches its limit on open cursors.  Counts are keyed by {@linkplain TrackedType type} name.
+ *
+ * @see  DriverTracker#registerMBean()
+ *
+ * @author  AO Industries, Inc.
+ */
+public interface DriverTrackerMXBean {
+
+  /**
+   * Gets the number of connections that have not yet been closed.
+   */
+  int getConnectionCount();
+
+  /**
+   * Gets the number of tracked objects of each type that have not yet been closed, aggregated across all connections.
+   */
+  Map<String, Integer> getTrackedCounts();
+
+  /**
+   * Gets the number of objects of each type opened through all drivers.
+   *
+   * @see  AllocationCallSite#getOpened()
+   */
+  Map<String, Long> getOpenedCounts();
+
+  /**
+   * Gets the number of objects of each type closed through all drivers, including those force-closed.
+   *
+   * @see  AllocationCallSite#getClosed()
+   */
+  Map<String, Long> getClosedCounts();
+
+  /**
+   * Gets the number of objects of each type force-closed by their connection or driver through all drivers.
+   *
+   * @see  AllocationCallSite#getLeaked()
+   */
+  Map<String, Long> getLeakedCounts();
+
+  /**
+   * Gets the number of connections that closed tracked objects when closed.
+   */
+  long getSweepCount();
+
+  /**
+   * Gets the number of tracked objects closed by connections when closed.
+   */
+  long getSweptObjectCount();
+
+  /**
+   * Gets the total time connections spent closing tracked objects when closed, in nanoseconds.
+   */
+  long getSweepTime();
+
+  /**
+   * Gets the longest time a connection spent closing tracked objects when closed, in nanoseconds.
+   */
+  long getMaxSweepTime();
+
+  /**
+   * Gets the number of statements reused from connections' statement caches.
+   *
+   * @see  DriverTracker#setStatementCacheSize(int)
+   */
+  long getStatementCacheHitCount();
+
+  /**
+   * Gets the number of statements prepared while connections' statement caches are enabled.
+   */
+  long getStatementCacheMissCount();
+
+  /**
+   * Gets the number of statements closed to keep connections' statement caches within their maximum size.
+   */
+  long getStatementCacheEvictionCount();
+
+  /**
+   * Gets the number of tracked objects of each type that have not yet been closed, per connection.  Only types with
+   * tracked objects are included.
+   */
+  Map<String, Map<String, Integer>> listTrackedCountsByConnection();
+}
@@ -0,0 +1,146 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * Computes the values of {@link DriverTrackerMXBean} on request, so monitoring adds nothing to wrapping or closing.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class DriverTrackerMXBeanImpl implements DriverTrackerMXBean {
+
+  private final DriverTracker driver;
+
+  DriverTrackerMXBeanImpl(DriverTracker driver) {
+    this.driver = driver;
+  }
+
+  @Override
+  public int getConnectionCount() {
+    AtomicInteger count = new AtomicInteger();
+    driver.forEachConnection(connection -> count.incrementAndGet());
+    return count.get();
+  }
+
+  @Override
+  public Map<String, Integer> getTrackedCounts() {
+    int[] counts = new int[TrackedType.COUNT];
+    driver.forEachConnection(connection -> {
+      for (TrackedType type : TrackedType.values()) {
+        counts[type.ordinal()] += connection.getTrackedCount(type);
+      }
+    });
+    Map<String, Integer> trackedCounts = new LinkedHashMap<>();
+    for (TrackedType type : TrackedType.values()) {
+      if (type != TrackedType.CONNECTION) {
+        trackedCounts.put(type.name(), counts[type.ordinal()]);
+      }
+    }
+    return trackedCounts;
+  }
+
+  private static Map<String, Long> sumCallSites(ToLongFunction<AllocationCallSite> count) {
+    long[] sums = new long[TrackedType.COUNT];
+    for (AllocationCallSite callSite : AllocationStacktraces.getCallSites()) {
+      sums[callSite.getType().ordinal()] += count.applyAsLong(callSite);
+    }
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (TrackedType type : TrackedType.values()) {
+      counts.put(type.name(), sums[type.ordinal()]);
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getOpenedCounts() {
+    return sumCallSites(AllocationCallSite::getOpened);
+  }
+
+  @Override
+  public Map<String, Long> getClosedCounts() {
+    return sumCallSites(AllocationCallSite::getClosed);
+  }
+
+  @Override
+  public Map<String, Long> getLeakedCounts() {
+    return sumCallSites(AllocationCallSite::getLeaked);
+  }
+
+  @Override
+  public long getSweepCount() {
+    return driver.getSweepCount();
+  }
+
+  @Override
+  public long getSweptObjectCount() {
+    return driver.getSweptObjectCount();
+  }
+
+  @Override
+  public long getSweepTime() {
+    return driver.getSweepTime();
+  }
+
+  @Override
+  public long getMaxSweepTime() {
+    return driver.getMaxSweepTime();
+  }
+
+  @Override
+  public long getStatementCacheHitCount() {
+    return driver.getStatementCacheHitCount();
+  }
+
+  @Override
+  public long getStatementCacheMissCount() {
+    return driver.getStatementCacheMissCount();
+  }
+
+  @Override
+  public long getStatementCacheEvictionCount() {
+    return driver.getStatementCacheEvictionCount();
+  }
+
+  @Override
+  public Map<String, Map<String, Integer>> listTrackedCountsByConnection() {
+    Map<String, Map<String, Integer>> byConnection = new LinkedHashMap<>();
+    driver.forEachConnection(connection -> {
+      Map<String, Integer> trackedCounts = new LinkedHashMap<>();
+      for (TrackedType type : TrackedType.values()) {
+        int count = connection.getTrackedCount(type);
+        if (count != 0) {
+          trackedCounts.put(type.name(), count);
+        }
+      }
+      byConnection.put(connection.toString(), trackedCounts);
+    });
+    return byConnection;
+  }
+}
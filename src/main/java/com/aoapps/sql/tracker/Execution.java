@@ -0,0 +1,180 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.sql.Statement;
+
+/**
+ * A statement execution being reported to the {@linkplain TrackerListener listeners} of its connection, to
+ * {@linkplain TrackerEvents Flight Recorder}, and to the {@link SlowQueryLog}.  Only created when there is something to
+ * report.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Execution {
+
+  /**
+   * Begins an execution.
+   *
+   * @param  sql  The SQL when provided to the execute method, or {@code null}
+   *
+   * @return  The execution or {@code null} when there are no listeners and the event is not enabled
+   */
+  static Execution begin(ConnectionTrackerImpl connectionTracker, TrackedType type, Statement statement, String sql) {
+    return begin(connectionTracker, type, statement, sql, false, null);
+  }
+
+  /**
+   * Begins an execution of a prepared or callable statement, which may be logged by the {@link SlowQueryLog}.
+   *
+   * @param  sql    The SQL when provided to the execute method, otherwise the SQL the statement was prepared with
+   * @param  binds  The parameters or {@code null} when none captured
+   *
+   * @return  The execution or {@code null} when there are no listeners, the event is not enabled, and the slow query
+   *          log is disabled
+   */
+  static Execution begin(ConnectionTrackerImpl connectionTracker, TrackedType type, Statement statement, String sql, Binds binds) {
+    return begin(connectionTracker, type, statement, sql, SlowQueryLog.isEnabled(), binds);
+  }
+
+  private static Execution begin(
+      ConnectionTrackerImpl connectionTracker,
+      TrackedType type,
+      Statement statement,
+      String sql,
+      boolean slowQueryLog,
+      Binds binds
+  ) {
+    if (sql != null && NPlusOneDetector.isEnabled()) {
+      connectionTracker.countExecution(sql);
+    }
+    TrackerListener listener = connectionTracker.getListener();
+    Object event = TrackerEvents.INSTANCE.executeBegin();
+    if (listener == null && event == null && !slowQueryLog) {
+      return null;
+    }
+    if (listener != null) {
+      listener.executeBegin(type, statement, sql);
+    }
+    return new Execution(listener, event, type, statement, sql, slowQueryLog ? binds : null, slowQueryLog);
+  }
+
+  /**
+   * Sets the number of rows affected.
+   *
+   * @param  execution  The execution, may be {@code null}
+   */
+  static void setRows(Execution execution, long rows) {
+    if (execution != null) {
+      execution.rows = rows;
+    }
+  }
+
+  /**
+   * Sets the number of rows affected by a batch, which is the sum of the update counts that are known.
+   *
+   * @param  execution  The execution, may be {@code null}
+   */
+  static void setRows(Execution execution, int[] updateCounts) {
+    if (execution != null && execution.slowQueryLog) {
+      long sum = 0;
+      for (int updateCount : updateCounts) {
+        if (updateCount > 0) {
+          sum += updateCount;
+        }
+      }
+      execution.rows = sum;
+    }
+  }
+
+  /**
+   * Sets the number of rows affected by a batch, which is the sum of the update counts that are known.
+   *
+   * @param  execution  The execution, may be {@code null}
+   */
+  static void setRows(Execution execution, long[] updateCounts) {
+    if (execution != null && execution.slowQueryLog) {
+      long sum = 0;
+      for (long updateCount : updateCounts) {
+        if (updateCount > 0) {
+          sum += updateCount;
+        }
+      }
+      execution.rows = sum;
+    }
+  }
+
+  /**
+   * Ends an execution.
+   *
+   * @param  execution  The execution from {@link #begin(com.aoapps.sql.tracker.ConnectionTrackerImpl, com.aoapps.sql.tracker.TrackedType, java.sql.Statement, java.lang.String)},
+   *                    may be {@code null}
+   */
+  static void end(Execution execution) {
+    if (execution != null) {
+      execution.end();
+    }
+  }
+
+  private final TrackerListener listener;
+  private final Object event;
+  private final TrackedType type;
+  private final Statement statement;
+  private final String sql;
+  private final Binds binds;
+  private final boolean slowQueryLog;
+  private final long startTime;
+  private long rows = -1;
+
+  private Execution(
+      TrackerListener listener,
+      Object event,
+      TrackedType type,
+      Statement statement,
+      String sql,
+      Binds binds,
+      boolean slowQueryLog
+  ) {
+    this.listener = listener;
+    this.event = event;
+    this.type = type;
+    this.statement = statement;
+    this.sql = sql;
+    this.binds = binds;
+    this.slowQueryLog = slowQueryLog;
+    this.startTime = System.nanoTime();
+  }
+
+  private void end() {
+    long nanos = System.nanoTime() - startTime;
+    if (listener != null) {
+      listener.executeEnd(type, statement, sql, nanos);
+    }
+    TrackerEvents.INSTANCE.executeEnd(event, type, sql);
+    if (slowQueryLog) {
+      SlowQueryLog.executed((AllocationStacktraceProvider) statement, type, sql, binds, nanos, rows);
+    }
+  }
+}
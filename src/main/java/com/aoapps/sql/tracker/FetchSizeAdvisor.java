@@ -0,0 +1,246 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Learns the number of rows the application actually reads from the results of each SQL query, and sets the
+ * {@linkplain java.sql.Statement#setFetchSize(int) fetch size} of later executions of the same SQL to match.  This
+ * avoids both drivers that fetch every row by default, which can exhaust memory on large results, and drivers with a
+ * small fixed fetch size, which cost many round trips on medium results.
+ *
+ * <p>Rows are counted through {@link java.sql.ResultSet#next()} on result sets returned by
+ * {@link java.sql.Statement#executeQuery(java.lang.String)} and {@link java.sql.PreparedStatement#executeQuery()},
+ * and recorded when the result set is closed.  The learned row count is a moving average, favoring recent executions.
+ * The fetch size applied is one more than the learned row count, so all rows and the end of the results are usually
+ * read in a single round trip, bounded by {@linkplain #setBounds(int, int) minimum and maximum fetch sizes}.</p>
+ *
+ * <p>Statements with a fetch size set by the application are left unchanged.  Connections may opt out individually
+ * through {@link ConnectionTrackerImpl#setAdaptiveFetchSize(boolean)}, or by URL through
+ * {@link #setExcludedUrls(java.lang.String...)}.</p>
+ *
+ * <p>Disabled by default, or enabled by the system property
+ * <code>com.aoapps.sql.tracker.FetchSizeAdvisor.enabled</code>.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class FetchSizeAdvisor {
+
+  /** Make no instances. */
+  private FetchSizeAdvisor() {
+    throw new AssertionError();
+  }
+
+  private static final Logger logger = Logger.getLogger(FetchSizeAdvisor.class.getName());
+
+  /**
+   * The system property that enables adaptive fetch sizes by default.
+   */
+  public static final String ENABLED_PROPERTY = FetchSizeAdvisor.class.getName() + ".enabled";
+
+  /**
+   * The system property that sets the default minimum fetch size.
+   */
+  public static final String MIN_FETCH_SIZE_PROPERTY = FetchSizeAdvisor.class.getName() + ".minFetchSize";
+
+  /**
+   * The system property that sets the default maximum fetch size.
+   */
+  public static final String MAX_FETCH_SIZE_PROPERTY = FetchSizeAdvisor.class.getName() + ".maxFetchSize";
+
+  /**
+   * The system property that sets the default excluded URLs, as a comma-separated list of URL prefixes.
+   */
+  public static final String EXCLUDED_URLS_PROPERTY = FetchSizeAdvisor.class.getName() + ".excludedUrls";
+
+  private static final int DEFAULT_MIN_FETCH_SIZE = 16;
+
+  private static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+
+  /**
+   * The maximum number of distinct SQL learned, evicting the least recently used.
+   */
+  private static final int MAX_SQL = 1000;
+
+  private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+  private static volatile int minFetchSize;
+
+  private static volatile int maxFetchSize;
+
+  private static volatile String[] excludedUrls;
+
+  static {
+    int min = SystemProperties.getNonNegativeInt(logger, MIN_FETCH_SIZE_PROPERTY, DEFAULT_MIN_FETCH_SIZE);
+    int max = SystemProperties.getNonNegativeInt(logger, MAX_FETCH_SIZE_PROPERTY, DEFAULT_MAX_FETCH_SIZE);
+    if (min < 1 || max < min) {
+      logger.log(Level.WARNING, "Invalid values of system properties " + MIN_FETCH_SIZE_PROPERTY + " and "
+          + MAX_FETCH_SIZE_PROPERTY + ", using " + DEFAULT_MIN_FETCH_SIZE + " through " + DEFAULT_MAX_FETCH_SIZE
+          + ": " + min + " through " + max);
+      min = DEFAULT_MIN_FETCH_SIZE;
+      max = DEFAULT_MAX_FETCH_SIZE;
+    }
+    setBounds(min, max);
+    String property = System.getProperty(EXCLUDED_URLS_PROPERTY);
+    setExcludedUrls(property == null ? new String[0] : property.split(","));
+  }
+
+  /**
+   * Checks if adaptive fetch sizes are enabled.
+   *
+   * @see  #setEnabled(boolean)
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables adaptive fetch sizes.  When disabled, statements keep the fetch size already applied until
+   * they are closed.
+   */
+  public static void setEnabled(boolean enabled) {
+    FetchSizeAdvisor.enabled = enabled;
+  }
+
+  /**
+   * Gets the minimum fetch size applied.
+   */
+  public static int getMinFetchSize() {
+    return minFetchSize;
+  }
+
+  /**
+   * Gets the maximum fetch size applied.
+   */
+  public static int getMaxFetchSize() {
+    return maxFetchSize;
+  }
+
+  /**
+   * Sets the bounds of the fetch sizes applied.  Defaults to {@code 16} through {@code 1000}, or set by the system
+   * properties <code>com.aoapps.sql.tracker.FetchSizeAdvisor.minFetchSize</code> and
+   * <code>com.aoapps.sql.tracker.FetchSizeAdvisor.maxFetchSize</code>.
+   *
+   * @throws  IllegalArgumentException  when {@code minFetchSize < 1} or {@code maxFetchSize < minFetchSize}
+   */
+  public static synchronized void setBounds(int minFetchSize, int maxFetchSize) {
+    if (minFetchSize < 1) {
+      throw new IllegalArgumentException("minFetchSize < 1: " + minFetchSize);
+    }
+    if (maxFetchSize < minFetchSize) {
+      throw new IllegalArgumentException("maxFetchSize < minFetchSize: " + maxFetchSize + " < " + minFetchSize);
+    }
+    FetchSizeAdvisor.minFetchSize = minFetchSize;
+    FetchSizeAdvisor.maxFetchSize = maxFetchSize;
+  }
+
+  /**
+   * Gets the URL prefixes of connections excluded from adaptive fetch sizes.
+   */
+  public static String[] getExcludedUrls() {
+    return excludedUrls.clone();
+  }
+
+  /**
+   * Sets the URL prefixes of connections excluded from adaptive fetch sizes, taking effect for connections not yet
+   * used for a query.  Matched against the URL of the wrapped connection, as reported by
+   * {@link java.sql.DatabaseMetaData#getURL()}.  None by default, or set by the system property
+   * <code>com.aoapps.sql.tracker.FetchSizeAdvisor.excludedUrls</code>.
+   */
+  public static void setExcludedUrls(String ... urlPrefixes) {
+    String[] trimmed = new String[urlPrefixes.length];
+    int count = 0;
+    for (String urlPrefix : urlPrefixes) {
+      urlPrefix = urlPrefix.trim();
+      if (!urlPrefix.isEmpty()) {
+        trimmed[count++] = urlPrefix;
+      }
+    }
+    String[] newExcludedUrls = new String[count];
+    System.arraycopy(trimmed, 0, newExcludedUrls, 0, count);
+    excludedUrls = newExcludedUrls;
+  }
+
+  /**
+   * Checks if a URL is excluded from adaptive fetch sizes.
+   *
+   * @param  url  The URL or {@code null} when unknown
+   */
+  static boolean isExcluded(String url) {
+    if (url != null) {
+      for (String urlPrefix : excludedUrls) {
+        if (url.startsWith(urlPrefix)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The learned number of rows read per SQL.
+   */
+  private static final LruMap<String, AtomicInteger> learned = new LruMap<>(MAX_SQL);
+
+  /**
+   * Gets the fetch size to apply to an execution.
+   *
+   * @return  The fetch size or {@code 0} when nothing learned
+   */
+  static int getFetchSize(String sql) {
+    AtomicInteger rows = learned.get(sql);
+    if (rows == null) {
+      return 0;
+    }
+    long fetchSize = rows.get() + 1L;
+    return (int) Math.max(minFetchSize, Math.min(maxFetchSize, fetchSize));
+  }
+
+  /**
+   * Records the number of rows read from the results of an execution.
+   */
+  static void read(String sql, long rows) {
+    int observed = (int) Math.min(rows, Integer.MAX_VALUE - 1);
+    AtomicInteger average = learned.get(sql);
+    if (average == null) {
+      average = learned.putIfAbsent(sql, new AtomicInteger(observed));
+      if (average == null) {
+        return;
+      }
+    }
+    // Exponential moving average, weighting the new observation by one quarter and rounding up
+    average.updateAndGet(previous -> (int) ((previous * 3L + observed + 3) / 4));
+  }
+
+  /**
+   * Forgets everything learned.
+   */
+  public static void clear() {
+    learned.clear();
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,7 +28,6 @@ import com.aoapps.sql.wrapper.InputStreamWrapper;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -42,23 +41,36 @@ public class InputStreamTracker extends InputStreamWrapper
 
   private static final Logger logger = Logger.getLogger(InputStreamTracker.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link InputStream} tracker.
    */
   public InputStreamTracker(ConnectionTrackerImpl connectionTracker, InputStream wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.INPUT_STREAM, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.INPUT_STREAM, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -66,13 +78,134 @@ public class InputStreamTracker extends InputStreamWrapper
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The children of the first object that obtained this stream, which closes it when closed.
+   */
+  private TrackedChildren parent; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
+  /**
+   * Sets the parent when not already owned.
+   */
+  synchronized void setParent(TrackedChildren newParent) {
+    if (parent == null) {
+      parent = newParent;
+      newParent.added(getWrapped(), this);
+    }
+  }
+
+  /**
+   * The result set this stream was obtained through, directly or through a LOB, which meters the bytes read, or
+   * {@code null} when not obtained through a result set.
+   */
+  private ResultSetTrackerImpl meteredBy;
+
+  final void setMeteredBy(ResultSetTrackerImpl meteredBy) {
+    this.meteredBy = meteredBy;
+  }
+
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection and parent then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    TrackedChildren p;
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      p = parent;
+      parent = null;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.INPUT_STREAM, this);
+    }
+    connectionTracker.untrack(TrackedType.INPUT_STREAM, getWrapped(), this);
+    if (p != null) {
+      p.removed(getWrapped(), this);
+    }
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * Whether within a read method, so bytes read by a read method implemented through another are only counted once.
+   */
+  private boolean reading;
+
+  @Override
+  public int read() throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read();
+    }
+    reading = true;
+    try {
+      int b = super.read();
+      if (b != -1) {
+        m.bytesRead(1);
+      }
+      return b;
+    } finally {
+      reading = false;
+    }
+  }
+
+  @Override
+  public int read(byte[] b) throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read(b);
+    }
+    reading = true;
+    try {
+      int count = super.read(b);
+      if (count > 0) {
+        m.bytesRead(count);
+      }
+      return count;
+    } finally {
+      reading = false;
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read(b, off, len);
+    }
+    reading = true;
+    try {
+      int count = super.read(b, off, len);
+      if (count > 0) {
+        m.bytesRead(count);
+      }
+      return count;
+    } finally {
+      reading = false;
+    }
+  }
+
   /**
    * Calls onClose handlers then {@code super.close()}.
    *
@@ -81,7 +214,7 @@ public class InputStreamTracker extends InputStreamWrapper
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void close() throws IOException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     try {
       super.close();
     } catch (Throwable t) {
@@ -0,0 +1,218 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits Java Flight Recorder events.  Only loaded when the {@code jdk.jfr} module is available.  Each method first
+ * checks whether its event type is enabled, so disabled events do not allocate.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class JfrTrackerEvents implements TrackerEvents {
+
+  private static final String CATEGORY = "JDBC";
+  private static final String SUBCATEGORY = "Tracker";
+
+  @Name("com.aoapps.sql.tracker.Opened")
+  @Label("Tracked Object Opened")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class OpenedEvent extends Event {
+    @Label("Type")
+    String type;
+
+    @Label("Call Site")
+    @Description("The identifier of the allocation call site")
+    int callSite;
+  }
+
+  @Name("com.aoapps.sql.tracker.Closed")
+  @Label("Tracked Object Closed")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class ClosedEvent extends Event {
+    @Label("Type")
+    String type;
+
+    @Label("Call Site")
+    @Description("The identifier of the allocation call site")
+    int callSite;
+
+    @Label("Age")
+    @Timespan(Timespan.NANOSECONDS)
+    long age;
+  }
+
+  @Name("com.aoapps.sql.tracker.ForceClosed")
+  @Label("Tracked Object Force-Closed")
+  @Description("A tracked object still open when its connection was closed or its driver deregistered")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class ForceClosedEvent extends Event {
+    @Label("Type")
+    String type;
+
+    @Label("Call Site")
+    @Description("The identifier of the allocation call site")
+    int callSite;
+  }
+
+  @Name("com.aoapps.sql.tracker.Sweep")
+  @Label("Connection Sweep")
+  @Description("A connection closing its tracked objects when closed")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class SweepEvent extends Event {
+    @Label("Count")
+    int count;
+  }
+
+  @Name("com.aoapps.sql.tracker.Execute")
+  @Label("Statement Execute")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class ExecuteEvent extends Event {
+    @Label("Type")
+    String type;
+
+    @Label("SQL")
+    String sql;
+  }
+
+  @Name("com.aoapps.sql.tracker.Savepoint")
+  @Label("Savepoint Release")
+  @Description("A savepoint being released or rolled back to")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class SavepointEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Released")
+    int released;
+  }
+
+  private static final EventType openedType = EventType.getEventType(OpenedEvent.class);
+  private static final EventType closedType = EventType.getEventType(ClosedEvent.class);
+  private static final EventType forceClosedType = EventType.getEventType(ForceClosedEvent.class);
+  private static final EventType sweepType = EventType.getEventType(SweepEvent.class);
+  private static final EventType executeType = EventType.getEventType(ExecuteEvent.class);
+  private static final EventType savepointType = EventType.getEventType(SavepointEvent.class);
+
+  @Override
+  public void opened(TrackedType type, int callSite) {
+    if (openedType.isEnabled()) {
+      OpenedEvent event = new OpenedEvent();
+      event.type = type.name();
+      event.callSite = callSite;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void closed(TrackedType type, int callSite, long allocationTime) {
+    if (closedType.isEnabled()) {
+      ClosedEvent event = new ClosedEvent();
+      event.type = type.name();
+      event.callSite = callSite;
+      event.age = System.nanoTime() - allocationTime;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void forceClosed(TrackedType type, int callSite) {
+    if (forceClosedType.isEnabled()) {
+      ForceClosedEvent event = new ForceClosedEvent();
+      event.type = type.name();
+      event.callSite = callSite;
+      event.commit();
+    }
+  }
+
+  @Override
+  public Object sweepBegin() {
+    if (sweepType.isEnabled()) {
+      SweepEvent event = new SweepEvent();
+      event.begin();
+      return event;
+    }
+    return null;
+  }
+
+  @Override
+  public void sweepEnd(Object event, int count) {
+    if (event != null) {
+      SweepEvent sweep = (SweepEvent) event;
+      sweep.count = count;
+      sweep.commit();
+    }
+  }
+
+  @Override
+  public Object executeBegin() {
+    if (executeType.isEnabled()) {
+      ExecuteEvent event = new ExecuteEvent();
+      event.begin();
+      return event;
+    }
+    return null;
+  }
+
+  @Override
+  public void executeEnd(Object event, TrackedType type, String sql) {
+    if (event != null) {
+      ExecuteEvent execute = (ExecuteEvent) event;
+      execute.end();
+      if (execute.shouldCommit()) {
+        execute.type = type.name();
+        execute.sql = sql;
+        execute.commit();
+      }
+    }
+  }
+
+  @Override
+  public Object savepointBegin() {
+    if (savepointType.isEnabled()) {
+      SavepointEvent event = new SavepointEvent();
+      event.begin();
+      return event;
+    }
+    return null;
+  }
+
+  @Override
+  public void savepointEnd(Object event, String operation, int released) {
+    if (event != null) {
+      SavepointEvent savepoint = (SavepointEvent) event;
+      savepoint.operation = operation;
+      savepoint.released = released;
+      savepoint.commit();
+    }
+  }
+}
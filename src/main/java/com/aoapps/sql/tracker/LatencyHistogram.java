@@ -0,0 +1,279 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, with buckets that are linear within each power of two.  There are
+ * {@value #SUB_BUCKETS} buckets per power of two, so each value is within 12.5% of its bucket.
+ *
+ * <p>Recording is three atomic updates with no allocation.  Counts recorded concurrently with a
+ * {@linkplain #getSnapshotAndReset() reset} are counted in either the snapshot or the following one, never lost.</p>
+ *
+ * @see  SqlLatencies
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /**
+   * The number of buckets per power of two.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The number of buckets to cover all non-negative {@code long} values.
+   */
+  static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /**
+   * Gets the index of the bucket containing the given value.
+   */
+  static int getIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * Gets the highest value in the bucket of the given index.
+   */
+  static long getHighestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowest = ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+    return lowest + ((1L << shift) - 1);
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder totalTime = new LongAdder();
+  private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+  /**
+   * The eviction epoch when last recorded, used by {@link SqlLatencies}.  Not synchronized, since an approximate
+   * value is sufficient.
+   */
+  int lastUsed;
+
+  /**
+   * The value of {@link #recorders} once retired.
+   */
+  private static final int RETIRED = Integer.MIN_VALUE;
+
+  /**
+   * The number of threads currently in {@link #recordIfActive(long)}, or {@link #RETIRED} once removed by
+   * {@link SqlLatencies}.
+   */
+  private final AtomicInteger recorders = new AtomicInteger();
+
+  /**
+   * Records a duration.
+   *
+   * @param  nanos  The duration in nanoseconds, with negative values counted as zero
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts.incrementAndGet(getIndex(nanos));
+    totalTime.add(nanos);
+    maxTime.accumulate(nanos);
+  }
+
+  /**
+   * Records a duration unless {@linkplain #retire() retired}.
+   *
+   * @param  nanos  The duration in nanoseconds, with negative values counted as zero
+   *
+   * @return  {@code true} when recorded or {@code false} when retired and nothing recorded
+   */
+  boolean recordIfActive(long nanos) {
+    int current;
+    do {
+      current = recorders.get();
+      if (current == RETIRED) {
+        return false;
+      }
+    } while (!recorders.compareAndSet(current, current + 1));
+    try {
+      record(nanos);
+    } finally {
+      recorders.decrementAndGet();
+    }
+    return true;
+  }
+
+  /**
+   * Retires this histogram when no thread is currently in {@link #recordIfActive(long)}.  Once retired, nothing more is
+   * recorded by {@link #recordIfActive(long)}, so a histogram may be removed from a map without losing durations
+   * recorded concurrently.
+   *
+   * @return  {@code true} when retired or {@code false} when currently recording
+   */
+  boolean retire() {
+    return recorders.compareAndSet(0, RETIRED);
+  }
+
+  /**
+   * Gets a snapshot of the durations recorded.
+   */
+  public Snapshot getSnapshot() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return new Snapshot(snapshot, totalTime.sum(), maxTime.get());
+  }
+
+  /**
+   * Gets a snapshot of the durations recorded, then resets to empty.  Called periodically to get the durations
+   * recorded per interval.
+   */
+  public Snapshot getSnapshotAndReset() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      if (counts.get(i) != 0) {
+        snapshot[i] = counts.getAndSet(i, 0);
+      }
+    }
+    return new Snapshot(snapshot, totalTime.sumThenReset(), maxTime.getThenReset());
+  }
+
+  /**
+   * An immutable snapshot of a {@link LatencyHistogram}.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long totalTime;
+    private final long maxTime;
+
+    private Snapshot(long[] counts, long totalTime, long maxTime) {
+      this.counts = counts;
+      long sum = 0;
+      for (long c : counts) {
+        sum += c;
+      }
+      this.count = sum;
+      this.totalTime = totalTime;
+      this.maxTime = maxTime;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + ", mean=" + getMeanTime() + ", p50=" + getPercentile(50) + ", p99="
+          + getPercentile(99) + ", p999=" + getPercentile(99.9) + ", max=" + maxTime;
+    }
+
+    /**
+     * Gets the number of durations recorded.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the sum of all durations, in nanoseconds.
+     */
+    public long getTotalTime() {
+      return totalTime;
+    }
+
+    /**
+     * Gets the mean duration, in nanoseconds.
+     *
+     * @return  The mean or {@code 0} when nothing recorded
+     */
+    public long getMeanTime() {
+      return count == 0 ? 0 : (totalTime / count);
+    }
+
+    /**
+     * Gets the longest duration, in nanoseconds.
+     */
+    public long getMaxTime() {
+      return maxTime;
+    }
+
+    /**
+     * Gets the duration at the given percentile, such as {@code 99.9}.  This is the highest value of the bucket
+     * containing the percentile, but not more than the {@linkplain #getMaxTime() longest duration}.
+     *
+     * @param  percentile  The percentile, from {@code 0} to {@code 100}
+     *
+     * @return  The duration in nanoseconds or {@code 0} when nothing recorded
+     */
+    public long getPercentile(double percentile) {
+      if (!(percentile >= 0 && percentile <= 100)) {
+        throw new IllegalArgumentException("percentile out of range [0, 100]: " + percentile);
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(count * (percentile / 100)));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(getHighestValue(i), maxTime);
+        }
+      }
+      return maxTime;
+    }
+
+    /**
+     * Gets the median duration, in nanoseconds.
+     */
+    public long getP50() {
+      return getPercentile(50);
+    }
+
+    /**
+     * Gets the 99th percentile duration, in nanoseconds.
+     */
+    public long getP99() {
+      return getPercentile(99);
+    }
+
+    /**
+     * Gets the 99.9th percentile duration, in nanoseconds.
+     */
+    public long getP999() {
+      return getPercentile(99.9);
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically finds tracked objects that have been open longer than a threshold per {@linkplain TrackedType type},
+ * such as a forgotten {@link java.sql.ResultSet} holding a server cursor on a pooled connection.
+ *
+ * <p>Scans all connections of a {@link DriverTracker} without locking, since the tracked objects of each connection
+ * are in concurrent maps.  The connections themselves, which are expected to be long-lived in a pool, and
+ * {@linkplain java.sql.Savepoint savepoints} are not scanned.</p>
+ *
+ * <p>Each object is reported once, by the scan following when its age reaches the threshold.  Objects are reported to
+ * the {@link Listener} when provided, or logged at level {@link Level#WARNING} with their
+ * {@linkplain AllocationStacktraces allocation stack trace} otherwise.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class LeakWatchdog implements AutoCloseable {
+
+  private static final Logger logger = Logger.getLogger(LeakWatchdog.class.getName());
+
+  /**
+   * Receives the objects open longer than their threshold.
+   */
+  @FunctionalInterface
+  public interface Listener {
+
+    /**
+     * Called once for each object open longer than the threshold for its type.
+     *
+     * @param  connection  The connection that tracks the object
+     * @param  type        The type of object
+     * @param  tracker     The tracker of the object
+     * @param  callSite    The call site where allocated
+     * @param  age         The time open, in nanoseconds
+     */
+    void onLongOpen(ConnectionTrackerImpl connection, TrackedType type, Object tracker, AllocationCallSite callSite, long age);
+  }
+
+  private final DriverTracker driver;
+  private final Listener listener;
+
+  /**
+   * The threshold per type in nanoseconds, indexed by {@link TrackedType#ordinal()}, or {@code 0} when not scanned.
+   */
+  private final AtomicLongArray thresholds = new AtomicLongArray(TrackedType.COUNT);
+
+  private boolean scanned; // Guarded by this
+  private long lastScan; // Guarded by this
+
+  private ScheduledExecutorService executor; // Guarded by this
+
+  /**
+   * Creates a new watchdog with no thresholds set, reporting through the given listener.
+   *
+   * @param  listener  The listener or {@code null} to log
+   *
+   * @see  #setThreshold(com.aoapps.sql.tracker.TrackedType, long, java.util.concurrent.TimeUnit)
+   * @see  #start(long, java.util.concurrent.TimeUnit)
+   */
+  public LeakWatchdog(DriverTracker driver, Listener listener) {
+    this.driver = driver;
+    this.listener = listener;
+  }
+
+  /**
+   * Creates a new watchdog with no thresholds set, logging the objects found.
+   *
+   * @see  #setThreshold(com.aoapps.sql.tracker.TrackedType, long, java.util.concurrent.TimeUnit)
+   * @see  #start(long, java.util.concurrent.TimeUnit)
+   */
+  public LeakWatchdog(DriverTracker driver) {
+    this(driver, null);
+  }
+
+  /**
+   * Gets the threshold for the given type.
+   *
+   * @return  The threshold in the given unit or {@code 0} when the type is not scanned
+   */
+  public long getThreshold(TrackedType type, TimeUnit unit) {
+    return unit.convert(thresholds.get(type.ordinal()), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Sets the threshold for the given type.
+   *
+   * @param  threshold  The threshold or {@code 0} to not scan the type
+   *
+   * @throws  IllegalArgumentException  when {@code threshold} is negative, or the type is
+   *                                    {@link TrackedType#CONNECTION} or {@link TrackedType#SAVEPOINT}
+   */
+  public void setThreshold(TrackedType type, long threshold, TimeUnit unit) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold < 0: " + threshold);
+    }
+    if ((type == TrackedType.CONNECTION || type == TrackedType.SAVEPOINT) && threshold != 0) {
+      throw new IllegalArgumentException("Type is not scanned: " + type);
+    }
+    thresholds.set(type.ordinal(), unit.toNanos(threshold));
+  }
+
+  /**
+   * Sets the threshold for all types except {@link TrackedType#CONNECTION} and {@link TrackedType#SAVEPOINT}.
+   *
+   * @see  #setThreshold(com.aoapps.sql.tracker.TrackedType, long, java.util.concurrent.TimeUnit)
+   */
+  public void setThreshold(long threshold, TimeUnit unit) {
+    for (TrackedType type : TrackedType.values()) {
+      if (type != TrackedType.CONNECTION && type != TrackedType.SAVEPOINT) {
+        setThreshold(type, threshold, unit);
+      }
+    }
+  }
+
+  /**
+   * Starts scanning in a background daemon thread.
+   *
+   * @param  period  The time between scans, which is also the longest an object may be open past its threshold before
+   *                 being reported
+   *
+   * @throws  IllegalStateException  when already started
+   */
+  public synchronized void start(long period, TimeUnit unit) {
+    if (executor != null) {
+      throw new IllegalStateException("Already started");
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, LeakWatchdog.class.getName());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::scanAndCatch, period, period, unit);
+  }
+
+  /**
+   * Stops scanning.  May be started again.
+   */
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  private void scanAndCatch() {
+    try {
+      scan();
+    } catch (Throwable t) {
+      // Keep scanning on the next period
+      logger.log(Level.SEVERE, "Error scanning for long-open objects", t);
+    }
+  }
+
+  /**
+   * Scans once, reporting the objects whose age reached their threshold since the previous scan.  The first scan
+   * reports all objects older than their threshold.
+   */
+  public synchronized void scan() {
+    long now = System.nanoTime();
+    boolean first = !scanned;
+    long sincePrevious = now - lastScan;
+    scanned = true;
+    lastScan = now;
+    driver.forEachConnection(connection -> {
+      for (TrackedType type : TrackedType.values()) {
+        long threshold = thresholds.get(type.ordinal());
+        if (threshold != 0) {
+          Map<?, ? extends AllocationStacktraceProvider> tracked = connection.getTrackedIfPresent(type);
+          if (tracked != null) {
+            for (AllocationStacktraceProvider tracker : tracked.values()) {
+              long age = now - tracker.getAllocationTime();
+              if (age >= threshold && (first || age - threshold < sincePrevious)) {
+                report(connection, type, tracker, age);
+              }
+            }
+          }
+        }
+      }
+    });
+  }
+
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  private void report(ConnectionTrackerImpl connection, TrackedType type, AllocationStacktraceProvider tracker, long age) {
+    try {
+      if (listener != null) {
+        listener.onLongOpen(connection, type, tracker, tracker.getAllocationCallSite(), age);
+      } else {
+        Logger allocationLogger = tracker.getAllocationLogger();
+        if (allocationLogger.isLoggable(Level.WARNING)) {
+          allocationLogger.log(
+              Level.WARNING,
+              type + " open for " + TimeUnit.NANOSECONDS.toSeconds(age) + " seconds: " + tracker,
+              tracker.getAllocationStacktrace());
+        }
+      }
+    } catch (Throwable t) {
+      logger.log(Level.SEVERE, "Error reporting long-open object", t);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A concurrent map bounded in size.  When exceeded, the least recently used entries are evicted, down to 90% of the
+ * bound.  Recency is approximate, tracked in epochs that advance on each eviction, as in {@link SqlLatencies}.
+ *
+ * <p>Reads through {@link #get(java.lang.Object)} update recency and do not allocate.  Each entry added allocates
+ * a single holder of its value and recency.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class LruMap<K, V> {
+
+  private static final class Node<V> {
+
+    private final V value;
+
+    /**
+     * The eviction epoch when last used.  Not synchronized, since an approximate value is sufficient.
+     */
+    private int lastUsed;
+
+    private Node(V value, int lastUsed) {
+      this.value = value;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  private final int maxSize;
+
+  private final ConcurrentMap<K, Node<V>> map = new ConcurrentHashMap<>();
+
+  private final Object evictionLock = new Object();
+
+  /**
+   * The current eviction epoch.
+   */
+  private volatile int epoch;
+
+  private final Map<K, V> unmodifiableView = new AbstractMap<K, V>() {
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return map.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+      Node<V> node = map.get(key);
+      return (node == null) ? null : node.value;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+      return new AbstractSet<Map.Entry<K, V>>() {
+        @Override
+        public int size() {
+          return map.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+          Iterator<Map.Entry<K, Node<V>>> iter = map.entrySet().iterator();
+          return new Iterator<Map.Entry<K, V>>() {
+            @Override
+            public boolean hasNext() {
+              return iter.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+              Map.Entry<K, Node<V>> next = iter.next();
+              return new AbstractMap.SimpleImmutableEntry<>(next.getKey(), next.getValue().value);
+            }
+          };
+        }
+      };
+    }
+  };
+
+  /**
+   * @param  maxSize  The maximum number of entries
+   */
+  LruMap(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize < 1: " + maxSize);
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Gets the value of a key, marking it as recently used.
+   *
+   * @return  The value or {@code null} when not present or evicted
+   */
+  V get(K key) {
+    Node<V> node = map.get(key);
+    if (node == null) {
+      return null;
+    }
+    node.lastUsed = epoch;
+    return node.value;
+  }
+
+  /**
+   * Adds a value when not present, evicting the least recently used entries when the bound is exceeded.
+   *
+   * @return  The previous value or {@code null} when added
+   */
+  V putIfAbsent(K key, V value) {
+    Node<V> existing = map.putIfAbsent(key, new Node<>(value, epoch));
+    if (existing != null) {
+      existing.lastUsed = epoch;
+      return existing.value;
+    }
+    if (map.size() > maxSize) {
+      evict();
+    }
+    return null;
+  }
+
+  /**
+   * Gets the value of a key, creating it when not present.  The function may be called more than once when the same
+   * key is added concurrently, with only one value kept.
+   *
+   * @return  The current value
+   */
+  V computeIfAbsent(K key, Function<? super K, ? extends V> newValue) {
+    V value = get(key);
+    if (value == null) {
+      value = newValue.apply(key);
+      V existing = putIfAbsent(key, value);
+      if (existing != null) {
+        value = existing;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Evicts the least recently used entries down to 90% of the bound, then advances the epoch.
+   */
+  private void evict() {
+    synchronized (evictionLock) {
+      if (map.size() <= maxSize) {
+        // Already evicted by another thread
+        return;
+      }
+      List<Map.Entry<K, Node<V>>> entries = new ArrayList<>(map.entrySet());
+      // Sorts a copy of the recency, which is written concurrently, with the index of each entry in the low bits
+      int count = entries.size();
+      long[] order = new long[count];
+      for (int i = 0; i < count; i++) {
+        order[i] = ((long) entries.get(i).getValue().lastUsed << Integer.SIZE) | i;
+      }
+      Arrays.sort(order);
+      int target = maxSize - maxSize / 10;
+      for (int i = 0, evict = count - target; i < evict; i++) {
+        Map.Entry<K, Node<V>> entry = entries.get((int) order[i]);
+        map.remove(entry.getKey(), entry.getValue());
+      }
+      epoch++;
+    }
+  }
+
+  /**
+   * Gets the number of entries.
+   */
+  int size() {
+    return map.size();
+  }
+
+  /**
+   * Removes all entries.
+   */
+  void clear() {
+    map.clear();
+  }
+
+  /**
+   * Gets an unmodifiable view of this map, without any defensive copy.  Reads through the view do not update
+   * recency.  Iteration is weakly consistent.
+   */
+  Map<K, V> asMap() {
+    return unmodifiableView;
+  }
+}
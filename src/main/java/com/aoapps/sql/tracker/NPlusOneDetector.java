@@ -0,0 +1,276 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the same SQL executed more than a threshold number of times within one transaction, or optionally one
+ * connection, which is typically a loop issuing one query per row of a previous query, known as "N+1" queries.
+ *
+ * <p>SQL is compared after normalization, which replaces string and numeric literals with {@code ?}, collapses
+ * lists of parameters, such as in {@code IN (?, ?, ?)}, to a single parameter, and collapses whitespace.</p>
+ *
+ * <p>Two scopes are counted:</p>
+ * <ol>
+ *   <li>A transaction, from {@link java.sql.Connection#setAutoCommit(boolean) setAutoCommit(false)} until
+ *       {@link java.sql.Connection#commit()}, {@link java.sql.Connection#rollback()}, or
+ *       {@link java.sql.Connection#setAutoCommit(boolean) setAutoCommit(true)}.</li>
+ *   <li>A connection, only when {@linkplain #setConnectionScope(boolean) enabled}, from its tracker being created
+ *       until closed or {@linkplain ConnectionTrackerImpl#reportExecutions() reported}.  When tracked beneath a
+ *       connection pool, the tracker lives as long as the pooled connection, so the pool should report on each
+ *       checkout or return.</li>
+ * </ol>
+ *
+ * <p>When a scope ends, each SQL executed more than the threshold is logged at level {@link Level#WARNING} with its
+ * count and the stack trace of the first execution past the threshold.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class NPlusOneDetector {
+
+  /** Make no instances. */
+  private NPlusOneDetector() {
+    throw new AssertionError();
+  }
+
+  private static final Logger logger = Logger.getLogger(NPlusOneDetector.class.getName());
+
+  /**
+   * The system property that sets the default threshold.
+   */
+  public static final String THRESHOLD_PROPERTY = NPlusOneDetector.class.getName() + ".threshold";
+
+  /**
+   * The number of executions of the same SQL allowed per scope, or {@code 0} when disabled.
+   */
+  private static volatile int threshold;
+
+  static {
+    setThreshold(SystemProperties.getNonNegativeInt(logger, THRESHOLD_PROPERTY, 0));
+  }
+
+  /**
+   * The system property that enables counting per connection by default.
+   */
+  public static final String CONNECTION_SCOPE_PROPERTY = NPlusOneDetector.class.getName() + ".connectionScope";
+
+  /**
+   * Whether executions are counted per connection, in addition to per transaction.
+   */
+  private static volatile boolean connectionScope = Boolean.getBoolean(CONNECTION_SCOPE_PROPERTY);
+
+  /**
+   * The maximum number of distinct SQL counted per scope, and of normalized SQL cached.
+   */
+  private static final int MAX_SQL = 1000;
+
+  /**
+   * Gets the threshold.
+   *
+   * @return  The number of executions of the same SQL allowed per scope, or {@code 0} when disabled
+   */
+  public static int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the threshold.
+   *
+   * @param  threshold  The number of executions of the same SQL allowed per scope, or {@code 0} to disable
+   *
+   * @throws  IllegalArgumentException  when {@code threshold} is negative
+   */
+  public static void setThreshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold < 0: " + threshold);
+    }
+    NPlusOneDetector.threshold = threshold;
+  }
+
+  static boolean isEnabled() {
+    return threshold != 0;
+  }
+
+  /**
+   * Checks if executions are counted per connection, in addition to per transaction.
+   *
+   * @see  #setConnectionScope(boolean)
+   */
+  public static boolean isConnectionScope() {
+    return connectionScope;
+  }
+
+  /**
+   * Enables or disables counting executions per connection, in addition to per transaction.  Disabled by default,
+   * since a connection tracked beneath a connection pool spans many unrelated uses unless
+   * {@linkplain ConnectionTrackerImpl#reportExecutions() reported} on each checkout or return.
+   *
+   * @see  #CONNECTION_SCOPE_PROPERTY
+   */
+  public static void setConnectionScope(boolean connectionScope) {
+    NPlusOneDetector.connectionScope = connectionScope;
+  }
+
+  /**
+   * The normalized form of recently executed SQL.
+   */
+  private static final LruMap<String, String> normalized = new LruMap<>(MAX_SQL);
+
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+
+  /**
+   * Normalizes SQL for comparison.
+   */
+  static String normalize(String sql) {
+    return normalized.computeIfAbsent(sql, NPlusOneDetector::doNormalize);
+  }
+
+  private static String doNormalize(String sql) {
+    int len = sql.length();
+    StringBuilder out = new StringBuilder(len);
+    int i = 0;
+    while (i < len) {
+      char ch = sql.charAt(i);
+      if (Character.isWhitespace(ch)) {
+        while (++i < len && Character.isWhitespace(sql.charAt(i))) {
+          // Skip whitespace
+        }
+        if (out.length() != 0 && i < len) {
+          out.append(' ');
+        }
+      } else if (ch == '\'') {
+        // String literal, with '' as an escaped quote
+        i++;
+        while (i < len) {
+          if (sql.charAt(i++) == '\'') {
+            if (i < len && sql.charAt(i) == '\'') {
+              i++;
+            } else {
+              break;
+            }
+          }
+        }
+        out.append('?');
+      } else if (ch == '"') {
+        // Quoted identifier, unchanged
+        int end = sql.indexOf('"', i + 1);
+        end = (end == -1) ? len : (end + 1);
+        out.append(sql, i, end);
+        i = end;
+      } else if (Character.isDigit(ch)) {
+        // Numeric literal when not part of an identifier
+        char prev = (out.length() == 0) ? ' ' : out.charAt(out.length() - 1);
+        int end = i + 1;
+        if (Character.isLetterOrDigit(prev) || prev == '_' || prev == '$') {
+          while (end < len && Character.isLetterOrDigit(sql.charAt(end))) {
+            end++;
+          }
+          out.append(sql, i, end);
+        } else {
+          while (end < len && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+            end++;
+          }
+          out.append('?');
+        }
+        i = end;
+      } else {
+        out.append(ch);
+        i++;
+      }
+    }
+    String result = out.toString();
+    if (result.indexOf(',') != -1) {
+      result = PARAMETER_LIST.matcher(result).replaceAll("?");
+    }
+    return result;
+  }
+
+  /**
+   * The executions counted within one connection or one transaction.  Not thread-safe, synchronized by the
+   * connection.
+   */
+  static final class Scope {
+
+    private final String name;
+
+    private final Map<String, Count> counts = new HashMap<>();
+
+    /**
+     * @param  name  The name of the scope, such as {@code "connection"} or {@code "transaction"}
+     */
+    Scope(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Counts an execution, capturing the stack trace at the first execution past the threshold.
+     *
+     * @param  sql  The normalized SQL
+     */
+    void executed(String sql, int threshold) {
+      Count count = counts.get(sql);
+      if (count == null) {
+        if (counts.size() >= MAX_SQL) {
+          // Bounded
+          return;
+        }
+        count = new Count();
+        counts.put(sql, count);
+      }
+      int executions = ++count.executions;
+      if (executions == threshold + 1) {
+        count.stacktrace = new Exception("Stack trace at execution " + executions);
+      }
+    }
+
+    /**
+     * Logs each SQL executed more than the threshold.
+     */
+    void report() {
+      if (logger.isLoggable(Level.WARNING)) {
+        for (Map.Entry<String, Count> entry : counts.entrySet()) {
+          Count count = entry.getValue();
+          if (count.stacktrace != null) {
+            logger.log(
+                Level.WARNING,
+                "Executed " + count.executions + " times in one " + name + ": " + entry.getKey(),
+                count.stacktrace
+            );
+          }
+        }
+      }
+    }
+  }
+
+  private static final class Count {
+    private int executions;
+    private Exception stacktrace;
+  }
+}
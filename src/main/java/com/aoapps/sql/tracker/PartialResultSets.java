@@ -0,0 +1,232 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Records result sets closed before {@link java.sql.ResultSet#next()} returned {@code false}, whether closed by the
+ * application or along with their statement or connection.  Queries that select many rows and read only the first
+ * few waste database and network time, which is often avoided by limiting the rows selected.
+ *
+ * <p>Aggregated per SQL, with the number of result sets closed early, the rows read from them, and their
+ * {@linkplain AllocationCallSite allocation call sites}.  Each is also logged at level {@link Level#FINE} with its
+ * SQL, rows read, and allocation stack trace, when captured.  Only the results of queries, from
+ * {@link java.sql.Statement#executeQuery(java.lang.String)}, {@link java.sql.PreparedStatement#executeQuery()}, or
+ * {@link java.sql.Statement#getResultSet()}, are recorded.  Generated keys and metadata are not.</p>
+ *
+ * <p>Result sets are not recorded when known to have been read to the end without {@code next()} returning
+ * {@code false}: when {@link java.sql.ResultSet#isLast()}, {@link java.sql.ResultSet#last()}, or
+ * {@link java.sql.ResultSet#isAfterLast()} returned {@code true}, {@link java.sql.ResultSet#afterLast()} was called,
+ * or the {@linkplain java.sql.Statement#setMaxRows(int) maximum rows} of the statement were read.  A single row read
+ * with {@code if (results.next())} is not recorded when the SQL limits its results to one row, such as with
+ * {@code LIMIT 1}, {@code FETCH FIRST ROW ONLY}, or {@code TOP 1}.  Other single row reads are recorded, and tend to
+ * show up with exactly one row read per result set.</p>
+ *
+ * <p>Disabled by default, or enabled by the system property
+ * <code>com.aoapps.sql.tracker.PartialResultSets.enabled</code>.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class PartialResultSets {
+
+  /** Make no instances. */
+  private PartialResultSets() {
+    throw new AssertionError();
+  }
+
+  private static final Logger logger = Logger.getLogger(PartialResultSets.class.getName());
+
+  /**
+   * The system property that enables recording by default.
+   */
+  public static final String ENABLED_PROPERTY = PartialResultSets.class.getName() + ".enabled";
+
+  /**
+   * The maximum number of distinct SQL recorded, evicting the least recently used.
+   */
+  private static final int MAX_SQL = 1000;
+
+  private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+  /**
+   * Checks if recording is enabled.
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables recording, taking effect for result sets closed afterwards.
+   */
+  public static void setEnabled(boolean enabled) {
+    PartialResultSets.enabled = enabled;
+  }
+
+  /**
+   * The result sets of one SQL closed before being read to the end.
+   */
+  public static final class Partial {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAccumulator maxRowsRead = new LongAccumulator(Math::max, 0);
+    private final ConcurrentMap<AllocationCallSite, LongAdder> callSites = new ConcurrentHashMap<>();
+
+    Partial() {
+      // Only created within this package
+    }
+
+    void add(long rows, AllocationCallSite callSite) {
+      count.increment();
+      rowsRead.add(rows);
+      maxRowsRead.accumulate(rows);
+      LongAdder callSiteCount = callSites.get(callSite);
+      if (callSiteCount == null) {
+        callSiteCount = callSites.computeIfAbsent(callSite, k -> new LongAdder());
+      }
+      callSiteCount.increment();
+    }
+
+    /**
+     * Gets the number of result sets closed before being read to the end.
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * Gets the total number of rows read from these result sets.
+     */
+    public long getRowsRead() {
+      return rowsRead.sum();
+    }
+
+    /**
+     * Gets the most rows read from any one of these result sets.
+     */
+    public long getMaxRowsRead() {
+      return maxRowsRead.get();
+    }
+
+    /**
+     * Gets the number of these result sets per allocation call site.  The call site of
+     * {@link TrackedType#RESULT_SET} itself counts the result sets without a stack trace captured.
+     *
+     * @see  AllocationStacktraces#setSampleRate(com.aoapps.sql.tracker.TrackedType, int)
+     */
+    public Map<AllocationCallSite, Long> getCallSites() {
+      Map<AllocationCallSite, Long> counts = new HashMap<>();
+      callSites.forEach((callSite, callSiteCount) -> counts.put(callSite, callSiteCount.sum()));
+      return Collections.unmodifiableMap(counts);
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount()
+          + ", rowsRead=" + getRowsRead()
+          + ", maxRowsRead=" + getMaxRowsRead();
+    }
+  }
+
+  /**
+   * The result sets closed early per SQL.
+   */
+  private static final LruMap<String, Partial> partialBySql = new LruMap<>(MAX_SQL);
+
+  /**
+   * Gets the result sets closed early per SQL, for up to one thousand distinct SQL, evicting the least recently used.
+   *
+   * @return  The unmodifiable mapping from SQL to result sets closed early, without any defensive copy.  Iteration is
+   *          weakly consistent.
+   */
+  public static Map<String, Partial> getPartialBySql() {
+    return partialBySql.asMap();
+  }
+
+  /**
+   * Gets the result sets of a single SQL closed early.
+   *
+   * @return  The result sets closed early or {@code null} when none recorded
+   */
+  public static Partial getPartial(String sql) {
+    return partialBySql.asMap().get(sql);
+  }
+
+  /**
+   * Forgets all result sets recorded.
+   */
+  public static void clear() {
+    partialBySql.clear();
+  }
+
+  /**
+   * Matches SQL that limits its results to a single row.
+   */
+  private static final Pattern SINGLE_ROW = Pattern.compile(
+      "\\b(?:LIMIT\\s+1|FETCH\\s+(?:FIRST|NEXT)\\s+(?:1\\s+)?ROWS?\\s+ONLY|TOP\\s*\\(?\\s*1\\s*\\)?)(?![\\w.]|\\s*,)",
+      Pattern.CASE_INSENSITIVE
+  );
+
+  /**
+   * Checks if SQL limits its results to a single row, such as with {@code LIMIT 1}, {@code FETCH FIRST ROW ONLY}, or
+   * {@code TOP 1}.
+   */
+  static boolean isSingleRow(String sql) {
+    return SINGLE_ROW.matcher(sql).find();
+  }
+
+  /**
+   * Records a result set closed before being read to the end, unless a single row read of SQL that limits its results
+   * to a single row.
+   *
+   * @param  results  The tracker of the result set
+   * @param  rows     The number of rows read
+   */
+  static void closed(AllocationStacktraceProvider results, String sql, long rows) {
+    if (rows <= 1 && isSingleRow(sql)) {
+      return;
+    }
+    Partial partial = partialBySql.computeIfAbsent(sql, k -> new Partial());
+    partial.add(rows, results.getAllocationCallSite().getInterned());
+    if (logger.isLoggable(Level.FINE)) {
+      logger.log(
+          Level.FINE,
+          "Result set closed after reading " + rows + (rows == 1 ? " row" : " rows")
+              + " without reaching the end: " + sql,
+          results.getAllocationStacktrace()
+      );
+    }
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,18 +23,30 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.PreparedStatementWrapperImpl;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
 import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
+import java.sql.Ref;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.RowId;
 import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
+import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -49,23 +61,36 @@ public class PreparedStatementTrackerImpl extends PreparedStatementWrapperImpl
 
   private static final Logger logger = Logger.getLogger(PreparedStatementTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link PreparedStatement} tracker.
    */
   public PreparedStatementTrackerImpl(ConnectionTrackerImpl connectionTracker, PreparedStatement wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.PREPARED_STATEMENT, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.PREPARED_STATEMENT, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -73,64 +98,986 @@ public class PreparedStatementTrackerImpl extends PreparedStatementWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The SQL this statement was prepared with, set once by the connection before being returned.
+   */
+  private String sql;
+
+  /**
+   * Gets the SQL this statement was prepared with.
+   *
+   * @return  The SQL or {@code null} when unknown
+   */
+  final String getSql() {
+    return sql;
+  }
+
+  final void setSql(String sql) {
+    this.sql = sql;
+  }
+
+  /**
+   * The key of this statement in the connection's statement cache, set once by the connection before being returned,
+   * or {@code null} when statement caching is disabled.
+   */
+  private StatementCache.Key cacheKey;
+
+  final void setCacheKey(StatementCache.Key cacheKey) {
+    this.cacheKey = cacheKey;
+  }
+
+  /**
+   * Whether a statement-level setting has been changed.  Since the setting would carry over to the next use of the
+   * wrapped statement, it is closed instead of being returned to the statement cache.
+   */
+  private volatile boolean dirty;
+
+  /**
+   * Whether the wrapped statement has been returned to the statement cache or closed, so only done once.
+   */
+  private boolean released; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  // Statement
-  private final Map<ResultSet, ResultSetTrackerImpl> trackedResultSets = synchronizedMap(new IdentityHashMap<>());
-  // PreparedStatement
-  private final Map<ParameterMetaData, ParameterMetaDataTrackerImpl> trackedParameterMetaDatas = synchronizedMap(new IdentityHashMap<>());
-  private final Map<ResultSetMetaData, ResultSetMetaDataTrackerImpl> trackedResultSetMetaDatas = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.PREPARED_STATEMENT, this);
+    }
+    connectionTracker.untrack(TrackedType.PREPARED_STATEMENT, getWrapped(), this);
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * Whether the application has set the fetch size, which is then left unchanged by adaptive fetch sizes.
+   */
+  private volatile boolean fetchSizeSet;
+
+  /**
+   * Whether an adaptive fetch size has been applied to the wrapped statement.
+   */
+  private boolean fetchSizeApplied;
+
+  /**
+   * The fetch size of the wrapped statement before an adaptive fetch size was applied, restored once no longer
+   * applied.  Not assumed to be {@code 0}, since drivers may have a configured default, or ignore {@code 0} and keep
+   * the last fetch size.
+   */
+  private int originalFetchSize;
+
+  /**
+   * The maximum number of rows set by the application, or {@code 0} for no limit, so result sets that reach it are
+   * known to have been read to the end.
+   */
+  private volatile long maxRows;
+
+  /**
+   * Applies the {@linkplain FetchSizeAdvisor adaptive fetch size} before executing a query.
+   *
+   * @return  Whether adaptive fetch sizes are in effect, so rows read from the results should be recorded
+   */
+  private boolean adaptFetchSize(String sql) throws SQLException {
+    if (sql == null || fetchSizeSet || !FetchSizeAdvisor.isEnabled() || !connectionTracker.isAdaptiveFetchSize()) {
+      return false;
+    }
+    int fetchSize = FetchSizeAdvisor.getFetchSize(sql);
+    if (fetchSize != 0) {
+      if (!fetchSizeApplied) {
+        originalFetchSize = super.getFetchSize();
+      }
+      // Not through this.setFetchSize, which would mark as set by the application
+      super.setFetchSize(fetchSize);
+      fetchSizeApplied = true;
+    } else if (fetchSizeApplied) {
+      // Restore the original fetch size after a different SQL
+      super.setFetchSize(originalFetchSize);
+      fetchSizeApplied = false;
+    }
+    return true;
+  }
+
+  /**
+   * The objects obtained through this statement, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSet, ResultSetTrackerImpl> getTrackedResultSets() {
-    return trackedResultSets;
+    return connectionTracker.getTrackedChildren(TrackedType.RESULT_SET, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ParameterMetaData, ParameterMetaDataTrackerImpl> getTrackedParameterMetaDatas() {
-    return trackedParameterMetaDatas;
+    return connectionTracker.getTrackedChildren(TrackedType.PARAMETER_META_DATA, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSetMetaData, ResultSetMetaDataTrackerImpl> getTrackedResultSetMetaDatas() {
-    return trackedResultSetMetaDatas;
+    return connectionTracker.getTrackedChildren(TrackedType.RESULT_SET_META_DATA, children);
   }
 
   @Override
   protected ResultSetTrackerImpl wrapResultSet(ResultSet results) throws SQLException {
-    return ConnectionTrackerImpl.getIfAbsent(trackedResultSets, results,
+    return ConnectionTrackerImpl.adopt(children, results,
         () -> (ResultSetTrackerImpl) super.wrapResultSet(results),
-        ResultSetTrackerImpl::getWrapped
+        ResultSetTrackerImpl::setParent
     );
   }
 
   @Override
   protected ParameterMetaDataTrackerImpl wrapParameterMetaData(ParameterMetaData metaData) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedParameterMetaDatas, metaData,
+    return ConnectionTrackerImpl.adopt(children, metaData,
         () -> (ParameterMetaDataTrackerImpl) super.wrapParameterMetaData(metaData),
-        ParameterMetaDataTrackerImpl::getWrapped
+        ParameterMetaDataTrackerImpl::setParent
     );
   }
 
   @Override
   protected ResultSetMetaDataTrackerImpl wrapResultSetMetaData(ResultSetMetaData metaData) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedResultSetMetaDatas, metaData,
+    return ConnectionTrackerImpl.adopt(children, metaData,
         () -> (ResultSetMetaDataTrackerImpl) super.wrapResultSetMetaData(metaData),
-        ResultSetMetaDataTrackerImpl::getWrapped
+        ResultSetMetaDataTrackerImpl::setParent
     );
   }
 
+  /**
+   * The parameters captured for the {@link SlowQueryLog}, created on first use while enabled.
+   */
+  private Binds binds;
+
+  /**
+   * Gets the buffer to capture parameters into.
+   *
+   * @return  The buffer or {@code null} when the {@link SlowQueryLog} is disabled
+   */
+  private Binds binds() {
+    if (!SlowQueryLog.isEnabled()) {
+      return null;
+    }
+    Binds b = binds;
+    if (b == null) {
+      b = new Binds();
+      binds = b;
+    }
+    return b;
+  }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType) throws SQLException {
+    super.setNull(parameterIndex, sqlType);
+    Binds b = binds();
+    if (b != null) {
+      b.setNull(parameterIndex);
+    }
+  }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+    super.setNull(parameterIndex, sqlType, typeName);
+    Binds b = binds();
+    if (b != null) {
+      b.setNull(parameterIndex);
+    }
+  }
+
+  @Override
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+    super.setBoolean(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setBoolean(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setByte(int parameterIndex, byte x) throws SQLException {
+    super.setByte(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setLong(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setShort(int parameterIndex, short x) throws SQLException {
+    super.setShort(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setLong(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setInt(int parameterIndex, int x) throws SQLException {
+    super.setInt(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setLong(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setLong(int parameterIndex, long x) throws SQLException {
+    super.setLong(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setLong(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setFloat(int parameterIndex, float x) throws SQLException {
+    super.setFloat(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setDouble(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setDouble(int parameterIndex, double x) throws SQLException {
+    super.setDouble(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setDouble(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+    super.setBigDecimal(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setString(int parameterIndex, String x) throws SQLException {
+    super.setString(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setNString(int parameterIndex, String value) throws SQLException {
+    super.setNString(parameterIndex, value);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, value);
+    }
+  }
+
+  @Override
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+    super.setBytes(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setDate(int parameterIndex, Date x) throws SQLException {
+    super.setDate(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+    super.setDate(parameterIndex, x, cal);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setTime(int parameterIndex, Time x) throws SQLException {
+    super.setTime(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+    super.setTime(parameterIndex, x, cal);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+    super.setTimestamp(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+    super.setTimestamp(parameterIndex, x, cal);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setURL(int parameterIndex, URL x) throws SQLException {
+    super.setURL(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x) throws SQLException {
+    super.setObject(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+    super.setObject(parameterIndex, x, targetSqlType);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+    super.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+    super.setObject(parameterIndex, x, targetSqlType);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+    super.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+    super.setAsciiStream(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, -1);
+    }
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    super.setAsciiStream(parameterIndex, x, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, length);
+    }
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+    super.setAsciiStream(parameterIndex, x, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, length);
+    }
+  }
+
+  @Override
+  public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    super.setUnicodeStream(parameterIndex, x, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, length);
+    }
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+    super.setBinaryStream(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, -1);
+    }
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    super.setBinaryStream(parameterIndex, x, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, length);
+    }
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+    super.setBinaryStream(parameterIndex, x, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, x, length);
+    }
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+    super.setCharacterStream(parameterIndex, reader);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, -1);
+    }
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+    super.setCharacterStream(parameterIndex, reader, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, length);
+    }
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+    super.setCharacterStream(parameterIndex, reader, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, length);
+    }
+  }
+
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+    super.setNCharacterStream(parameterIndex, value);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, value, -1);
+    }
+  }
+
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+    super.setNCharacterStream(parameterIndex, value, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, value, length);
+    }
+  }
+
+  @Override
+  public void setRef(int parameterIndex, Ref x) throws SQLException {
+    super.setRef(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, Blob x) throws SQLException {
+    super.setBlob(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+    super.setBlob(parameterIndex, inputStream);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, inputStream, -1);
+    }
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+    super.setBlob(parameterIndex, inputStream, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, inputStream, length);
+    }
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Clob x) throws SQLException {
+    super.setClob(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Reader reader) throws SQLException {
+    super.setClob(parameterIndex, reader);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, -1);
+    }
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+    super.setClob(parameterIndex, reader, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, length);
+    }
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, NClob value) throws SQLException {
+    super.setNClob(parameterIndex, value);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, value);
+    }
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+    super.setNClob(parameterIndex, reader);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, -1);
+    }
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+    super.setNClob(parameterIndex, reader, length);
+    Binds b = binds();
+    if (b != null) {
+      b.setStream(parameterIndex, reader, length);
+    }
+  }
+
+  @Override
+  public void setArray(int parameterIndex, Array x) throws SQLException {
+    super.setArray(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setRowId(int parameterIndex, RowId x) throws SQLException {
+    super.setRowId(parameterIndex, x);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, x);
+    }
+  }
+
+  @Override
+  public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+    super.setSQLXML(parameterIndex, xmlObject);
+    Binds b = binds();
+    if (b != null) {
+      b.setObject(parameterIndex, xmlObject);
+    }
+  }
+
+  @Override
+  public void clearParameters() throws SQLException {
+    super.clearParameters();
+    Binds b = binds;
+    if (b != null) {
+      b.clear();
+    }
+  }
+
+  @Override
+  public boolean execute() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      return super.execute();
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public ResultSetTrackerImpl executeQuery() throws SQLException {
+    boolean adaptive = adaptFetchSize(sql);
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      ResultSetTrackerImpl results = (ResultSetTrackerImpl) super.executeQuery();
+      if (results != null) {
+        results.setQuery(maxRows);
+        if (adaptive) {
+          results.setAdaptive();
+        }
+      }
+      return results;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      int rows = super.executeUpdate();
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      long rows = super.executeLargeUpdate();
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      return super.execute(sql);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      return super.execute(sql, autoGeneratedKeys);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      return super.execute(sql, columnIndexes);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql, String[] columnNames) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      return super.execute(sql, columnNames);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public ResultSetTrackerImpl executeQuery(String sql) throws SQLException {
+    boolean adaptive = adaptFetchSize(sql);
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      ResultSetTrackerImpl results = (ResultSetTrackerImpl) super.executeQuery(sql);
+      if (results != null) {
+        results.setQuery(maxRows);
+        if (adaptive) {
+          results.setAdaptive();
+        }
+      }
+      return results;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      int rows = super.executeUpdate(sql);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      int rows = super.executeUpdate(sql, autoGeneratedKeys);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      int rows = super.executeUpdate(sql, columnIndexes);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      int rows = super.executeUpdate(sql, columnNames);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      long rows = super.executeLargeUpdate(sql);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      long rows = super.executeLargeUpdate(sql, autoGeneratedKeys);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      long rows = super.executeLargeUpdate(sql, columnIndexes);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      long rows = super.executeLargeUpdate(sql, columnNames);
+      Execution.setRows(execution, rows);
+      return rows;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int[] executeBatch() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      int[] updateCounts = super.executeBatch();
+      Execution.setRows(execution, updateCounts);
+      return updateCounts;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long[] executeLargeBatch() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.PREPARED_STATEMENT, this, sql, binds);
+    try {
+      long[] updateCounts = super.executeLargeBatch();
+      Execution.setRows(execution, updateCounts);
+      return updateCounts;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public ResultSetTrackerImpl getResultSet() throws SQLException {
+    ResultSetTrackerImpl results = (ResultSetTrackerImpl) super.getResultSet();
+    if (results != null) {
+      results.setQuery(maxRows);
+    }
+    return results;
+  }
+
+  @Override
+  public void setMaxFieldSize(int max) throws SQLException {
+    dirty = true;
+    super.setMaxFieldSize(max);
+  }
+
+  @Override
+  public void setMaxRows(int max) throws SQLException {
+    dirty = true;
+    super.setMaxRows(max);
+    maxRows = max;
+  }
+
+  @Override
+  public void setLargeMaxRows(long max) throws SQLException {
+    dirty = true;
+    super.setLargeMaxRows(max);
+    maxRows = max;
+  }
+
+  @Override
+  public void setEscapeProcessing(boolean enable) throws SQLException {
+    dirty = true;
+    super.setEscapeProcessing(enable);
+  }
+
+  @Override
+  public void setQueryTimeout(int seconds) throws SQLException {
+    dirty = true;
+    super.setQueryTimeout(seconds);
+  }
+
+  @Override
+  public void setCursorName(String name) throws SQLException {
+    dirty = true;
+    super.setCursorName(name);
+  }
+
+  @Override
+  public void setFetchDirection(int direction) throws SQLException {
+    dirty = true;
+    super.setFetchDirection(direction);
+  }
+
+  @Override
+  public void setFetchSize(int rows) throws SQLException {
+    dirty = true;
+    fetchSizeSet = true;
+    super.setFetchSize(rows);
+  }
+
+  @Override
+  public void setPoolable(boolean poolable) throws SQLException {
+    dirty = true;
+    super.setPoolable(poolable);
+  }
+
+  @Override
+  public void closeOnCompletion() throws SQLException {
+    dirty = true;
+    super.closeOnCompletion();
+  }
+
   /**
    * {@inheritDoc}
    *
+   * <p>Once closed, a cached statement reports as closed, even though the wrapped statement remains open in the
+   * statement cache.</p>
+   */
+  @Override
+  public boolean isClosed() throws SQLException {
+    if (cacheKey != null) {
+      synchronized (this) {
+        if (released) {
+          return true;
+        }
+      }
+    }
+    return super.isClosed();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>When statement caching is enabled and no statement-level setting has been changed, this is a logical close:
+   * child objects are closed, and the wrapped statement has its parameters cleared and is returned to the connection's
+   * statement cache for reuse by a later {@code prepare} of the same SQL.  Any {@linkplain FetchSizeAdvisor adaptive
+   * fetch size} is first restored to the fetch size it replaced.  This statement must not be used after being closed,
+   * as the wrapped statement may already be in use elsewhere.</p>
+   *
+   * @see  ConnectionTrackerImpl#setStatementCacheSize(int)
    * @see  ResultSetTrackerImpl#close()
    *
    * @see  ParameterMetaDataTrackerImpl#close()
@@ -139,17 +1086,45 @@ public class PreparedStatementTrackerImpl extends PreparedStatementWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "unchecked"})
   public void close() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    StatementCache.Key key = cacheKey;
+    boolean wasReleased = false;
+    if (key != null) {
+      synchronized (this) {
+        wasReleased = released;
+        released = true;
+      }
+    }
+    // Release the parameters, as cleared from the wrapped statement when cached
+    binds = null;
+    Throwable t0 = untrack();
     // Close tracked objects
-    // Statement
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, PreparedStatementTrackerImpl.class, "close()", "trackedResultSets", trackedResultSets);
-    // PreparedStatement
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, PreparedStatementTrackerImpl.class, "close()", "trackedParameterMetaDatas", trackedParameterMetaDatas);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, PreparedStatementTrackerImpl.class, "close()", "trackedResultSetMetaDatas", trackedResultSetMetaDatas);
-    try {
-      super.close();
-    } catch (Throwable t) {
-      t0 = Throwables.addSuppressed(t0, t);
+    if (!children.isEmpty()) {
+      // Statement
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, PreparedStatementTrackerImpl.class, "close()", "trackedResultSets", connectionTracker.drainChildren(TrackedType.RESULT_SET, children));
+      // PreparedStatement
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, PreparedStatementTrackerImpl.class, "close()", "trackedParameterMetaDatas", connectionTracker.drainChildren(TrackedType.PARAMETER_META_DATA, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, PreparedStatementTrackerImpl.class, "close()", "trackedResultSetMetaDatas", connectionTracker.drainChildren(TrackedType.RESULT_SET_META_DATA, children));
+    }
+    if (key != null && !dirty && !wasReleased && fetchSizeApplied) {
+      // Restore the original fetch size, so the next use of the cached statement does not inherit the adaptive one
+      try {
+        super.setFetchSize(originalFetchSize);
+        fetchSizeApplied = false;
+      } catch (Throwable t) {
+        t0 = Throwables.addSuppressed(t0, t);
+        dirty = true;
+      }
+    }
+    if (key != null && !dirty) {
+      if (!wasReleased) {
+        t0 = connectionTracker.releaseStatement(t0, key, getWrapped());
+      }
+    } else if (!wasReleased) {
+      try {
+        super.close();
+      } catch (Throwable t) {
+        t0 = Throwables.addSuppressed(t0, t);
+      }
     }
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,8 +27,8 @@ import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.ReaderWrapper;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -42,23 +42,36 @@ public class ReaderTracker extends ReaderWrapper
 
   private static final Logger logger = Logger.getLogger(ReaderTracker.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link Reader} tracker.
    */
   public ReaderTracker(ConnectionTrackerImpl connectionTracker, Reader wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.READER, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.READER, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -66,13 +79,152 @@ public class ReaderTracker extends ReaderWrapper
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The children of the first object that obtained this reader, which closes it when closed.
+   */
+  private TrackedChildren parent; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
+  /**
+   * Sets the parent when not already owned.
+   */
+  synchronized void setParent(TrackedChildren newParent) {
+    if (parent == null) {
+      parent = newParent;
+      newParent.added(getWrapped(), this);
+    }
+  }
+
+  /**
+   * The result set this reader was obtained through, directly or through a LOB, which meters the characters read, or
+   * {@code null} when not obtained through a result set.
+   */
+  private ResultSetTrackerImpl meteredBy;
+
+  final void setMeteredBy(ResultSetTrackerImpl meteredBy) {
+    this.meteredBy = meteredBy;
+  }
+
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection and parent then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    TrackedChildren p;
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      p = parent;
+      parent = null;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.READER, this);
+    }
+    connectionTracker.untrack(TrackedType.READER, getWrapped(), this);
+    if (p != null) {
+      p.removed(getWrapped(), this);
+    }
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * Whether within a read method, so characters read by a read method implemented through another are only counted once.
+   */
+  private boolean reading;
+
+  @Override
+  public int read() throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read();
+    }
+    reading = true;
+    try {
+      int ch = super.read();
+      if (ch != -1) {
+        m.charsRead(1);
+      }
+      return ch;
+    } finally {
+      reading = false;
+    }
+  }
+
+  @Override
+  public int read(char[] cbuf) throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read(cbuf);
+    }
+    reading = true;
+    try {
+      int count = super.read(cbuf);
+      if (count > 0) {
+        m.charsRead(count);
+      }
+      return count;
+    } finally {
+      reading = false;
+    }
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read(cbuf, off, len);
+    }
+    reading = true;
+    try {
+      int count = super.read(cbuf, off, len);
+      if (count > 0) {
+        m.charsRead(count);
+      }
+      return count;
+    } finally {
+      reading = false;
+    }
+  }
+
+  @Override
+  public int read(CharBuffer target) throws IOException {
+    ResultSetTrackerImpl m = meteredBy;
+    if (m == null || reading) {
+      return super.read(target);
+    }
+    reading = true;
+    try {
+      int count = super.read(target);
+      if (count > 0) {
+        m.charsRead(count);
+      }
+      return count;
+    } finally {
+      reading = false;
+    }
+  }
+
   /**
    * Calls onClose handlers then {@code super.close()}.
    *
@@ -81,7 +233,7 @@ public class ReaderTracker extends ReaderWrapper
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void close() throws IOException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     try {
       super.close();
     } catch (Throwable t) {
@@ -0,0 +1,180 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meters the data read from result sets, per SQL and per connection.  Counts the rows read through
+ * {@link java.sql.ResultSet#next()}, the bytes read through {@link java.sql.ResultSet#getBytes(int)}, binary and ASCII
+ * streams, and {@linkplain java.sql.Blob blobs}, and the characters read through
+ * {@link java.sql.ResultSet#getString(int)}, {@link java.sql.ResultSet#getNString(int)}, character streams, and
+ * {@linkplain java.sql.Clob clobs}.  Streams and LOBs are counted as read, so a LOB never read is not counted.
+ *
+ * <p>Each result set is counted when closed.  Per SQL, the SQL is that of the statement the result set was obtained
+ * from, while result sets not obtained from a statement, such as those of {@link java.sql.DatabaseMetaData}, are only
+ * counted per connection.</p>
+ *
+ * <p>Disabled by default, or enabled by the system property
+ * <code>com.aoapps.sql.tracker.ResultSetMeter.enabled</code>.</p>
+ *
+ * @see  ConnectionTrackerImpl#getResultSetUsage()
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class ResultSetMeter {
+
+  /** Make no instances. */
+  private ResultSetMeter() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The system property that enables metering by default.
+   */
+  public static final String ENABLED_PROPERTY = ResultSetMeter.class.getName() + ".enabled";
+
+  /**
+   * The maximum number of distinct SQL metered.
+   */
+  private static final int MAX_SQL = 1000;
+
+  private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+  /**
+   * Checks if metering is enabled.
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables metering, taking effect for result sets closed afterwards.
+   */
+  public static void setEnabled(boolean enabled) {
+    ResultSetMeter.enabled = enabled;
+  }
+
+  /**
+   * The data read from result sets, counted concurrently without contention.
+   */
+  public static final class Usage {
+
+    private final LongAdder resultSetCount = new LongAdder();
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder byteCount = new LongAdder();
+    private final LongAdder charCount = new LongAdder();
+
+    Usage() {
+      // Only created within this package
+    }
+
+    void add(long rows, long bytes, long chars) {
+      resultSetCount.increment();
+      rowCount.add(rows);
+      byteCount.add(bytes);
+      charCount.add(chars);
+    }
+
+    /**
+     * Gets the number of result sets closed.
+     */
+    public long getResultSetCount() {
+      return resultSetCount.sum();
+    }
+
+    /**
+     * Gets the number of rows read.
+     */
+    public long getRowCount() {
+      return rowCount.sum();
+    }
+
+    /**
+     * Gets the number of bytes read.
+     */
+    public long getByteCount() {
+      return byteCount.sum();
+    }
+
+    /**
+     * Gets the number of characters read.
+     */
+    public long getCharCount() {
+      return charCount.sum();
+    }
+
+    @Override
+    public String toString() {
+      return "resultSets=" + getResultSetCount()
+          + ", rows=" + getRowCount()
+          + ", bytes=" + getByteCount()
+          + ", chars=" + getCharCount();
+    }
+  }
+
+  /**
+   * The usage per SQL.
+   */
+  private static final LruMap<String, Usage> usageBySql = new LruMap<>(MAX_SQL);
+
+  /**
+   * Gets the usage per SQL, for up to one thousand distinct SQL, evicting the least recently used.
+   *
+   * @return  The unmodifiable mapping from SQL to usage, without any defensive copy.  Iteration is weakly consistent.
+   */
+  public static Map<String, Usage> getUsageBySql() {
+    return usageBySql.asMap();
+  }
+
+  /**
+   * Gets the usage of a single SQL.
+   *
+   * @return  The usage or {@code null} when not metered
+   */
+  public static Usage getUsage(String sql) {
+    return usageBySql.asMap().get(sql);
+  }
+
+  /**
+   * Forgets the usage of all SQL.  The usage of connections is not affected.
+   */
+  public static void clear() {
+    usageBySql.clear();
+  }
+
+  /**
+   * Records the data read from a closed result set.
+   *
+   * @param  sql  The SQL or {@code null} when unknown
+   */
+  static void read(ConnectionTrackerImpl connectionTracker, String sql, long rows, long bytes, long chars) {
+    connectionTracker.getResultSetUsage().add(rows, bytes, chars);
+    if (sql != null) {
+      usageBySql.computeIfAbsent(sql, k -> new Usage()).add(rows, bytes, chars);
+    }
+  }
+}
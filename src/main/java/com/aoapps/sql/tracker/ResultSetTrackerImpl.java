@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,8 +23,6 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.ResultSetWrapperImpl;
 import com.aoapps.sql.wrapper.StatementWrapperImpl;
@@ -39,12 +37,13 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.RowId;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLXML;
+import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -57,23 +56,65 @@ public class ResultSetTrackerImpl extends ResultSetWrapperImpl
 
   private static final Logger logger = Logger.getLogger(ResultSetTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  /**
+   * The SQL of the statement this result set was obtained through, or {@code null} when unknown.
+   */
+  private final String sql;
+
+  /**
+   * Whether the values obtained from a row are {@linkplain ConnectionTrackerImpl#setRowScoped(boolean) released} on
+   * moving to another row.
+   */
+  private final boolean rowScoped;
+
+  /**
+   * The wrapped statement this result set was obtained through, canceled when
+   * {@linkplain ConnectionTrackerImpl#setCancelUnexhausted(boolean) closed before being read to the end}, or
+   * {@code null} when not obtained through a statement.
+   */
+  private final Statement statement;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link ResultSet} tracker.
    */
   public ResultSetTrackerImpl(ConnectionTrackerImpl connectionTracker, StatementWrapperImpl stmtTracker, ResultSet wrapped) {
     super(connectionTracker, stmtTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
+    this.connectionTracker = connectionTracker;
+    if (stmtTracker instanceof PreparedStatementTrackerImpl) {
+      sql = ((PreparedStatementTrackerImpl) stmtTracker).getSql();
+    } else if (stmtTracker instanceof CallableStatementTrackerImpl) {
+      sql = ((CallableStatementTrackerImpl) stmtTracker).getSql();
+    } else if (stmtTracker instanceof StatementTrackerImpl) {
+      sql = ((StatementTrackerImpl) stmtTracker).getSql();
     } else {
-      allocationStacktrace = null;
+      sql = null;
     }
+    statement = (stmtTracker == null) ? null : stmtTracker.getWrapped();
+    rowScoped = connectionTracker.isRowScoped();
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.RESULT_SET, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.RESULT_SET, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -81,169 +122,487 @@ public class ResultSetTrackerImpl extends ResultSetWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The children of the first object that obtained this result set, which closes it when closed.
+   */
+  private TrackedChildren parent; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<Array, ArrayTrackerImpl> trackedArrays = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Blob, BlobTrackerImpl> trackedBlobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Clob, ClobTrackerImpl> trackedClobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<InputStream, InputStreamTracker> trackedInputStreams = synchronizedMap(new IdentityHashMap<>());
-  private final Map<NClob, NClobTrackerImpl> trackedNClobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Reader, ReaderTracker> trackedReaders = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Ref, RefTrackerImpl> trackedRefs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<ResultSetMetaData, ResultSetMetaDataTrackerImpl> trackedResultSetMetaDatas = synchronizedMap(new IdentityHashMap<>());
-  private final Map<RowId, RowIdTrackerImpl> trackedRowIds = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLXML, SQLXMLTrackerImpl> trackedSQLXMLs = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Sets the parent when not already owned.
+   */
+  synchronized void setParent(TrackedChildren newParent) {
+    if (parent == null) {
+      parent = newParent;
+      newParent.added(getWrapped(), this);
+    }
+  }
+
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Whether to cancel the statement before closing, set when first closed.
+   */
+  private boolean cancel;
+
+  /**
+   * Stops tracking by the connection and parent then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    TrackedChildren p;
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      p = parent;
+      parent = null;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.RESULT_SET, this);
+      if (adaptive) {
+        FetchSizeAdvisor.read(sql, rowsRead);
+      }
+      if (ResultSetMeter.isEnabled()) {
+        ResultSetMeter.read(connectionTracker, sql, rowsRead, bytesRead, charsRead);
+      }
+      if (query && !exhausted && sql != null && PartialResultSets.isEnabled()) {
+        PartialResultSets.closed(this, sql, rowsRead);
+      }
+      cancel = query && !exhausted && statement != null && connectionTracker.isCancelUnexhausted();
+    }
+    connectionTracker.untrack(TrackedType.RESULT_SET, getWrapped(), this);
+    if (p != null) {
+      p.removed(getWrapped(), this);
+    }
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * Whether {@linkplain FetchSizeAdvisor adaptive fetch sizes} are in effect, so the rows read are recorded.
+   */
+  private volatile boolean adaptive;
+
+  /**
+   * Whether the results of a query, from {@code executeQuery} or {@code getResultSet}, as opposed to generated keys or
+   * metadata.  Only the results of queries are recorded by {@link PartialResultSets} or canceled.
+   */
+  private volatile boolean query;
+
+  /**
+   * The maximum number of rows of the statement when executed, or {@code 0} for no limit.  Written before
+   * {@link #query}.
+   */
+  private long maxRows;
+
+  /**
+   * Marks as the results of a query.
+   *
+   * @param  maxRows  The maximum number of rows of the statement, or {@code 0} for no limit
+   */
+  final void setQuery(long maxRows) {
+    this.maxRows = maxRows;
+    query = true;
+  }
+
+  /**
+   * Records the rows read into the {@link FetchSizeAdvisor} when closed.
+   */
+  final void setAdaptive() {
+    adaptive = true;
+  }
+
+  /**
+   * The number of rows read through {@link #next()}.
+   */
+  private long rowsRead;
+
+  /**
+   * Whether all rows are known to have been read: {@link #next()} has returned {@code false}, the cursor is known to be
+   * on or after the last row, or the maximum rows of the statement have been read.
+   */
+  private boolean exhausted;
+
+  /**
+   * The number of bytes read, including through streams and LOBs obtained through this result set.
+   */
+  private long bytesRead;
+
+  /**
+   * The number of characters read, including through readers and LOBs obtained through this result set.
+   */
+  private long charsRead;
+
+  /**
+   * Counts bytes read for the {@link ResultSetMeter}.
+   */
+  final void bytesRead(long count) {
+    bytesRead += count;
+  }
+
+  /**
+   * Counts characters read for the {@link ResultSetMeter}.
+   */
+  final void charsRead(long count) {
+    charsRead += count;
+  }
+
+  /**
+   * The objects obtained through this result set, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
+
+  /**
+   * The LOBs, SQLXML, streams, and readers obtained through this result set, which are values of a single row, each
+   * tracked by the connection with these children as its parent.  Kept apart from {@link #children} so
+   * {@linkplain ConnectionTrackerImpl#setRowScoped(boolean) releasing them on each move} is skipped when none.
+   */
+  private final TrackedChildren rowChildren = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Array, ArrayTrackerImpl> getTrackedArrays() {
-    return trackedArrays;
+    return connectionTracker.getTrackedChildren(TrackedType.ARRAY, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Blob, BlobTrackerImpl> getTrackedBlobs() {
-    return trackedBlobs;
+    return connectionTracker.getTrackedChildren(TrackedType.BLOB, rowChildren);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Clob, ClobTrackerImpl> getTrackedClobs() {
-    return trackedClobs;
+    return connectionTracker.getTrackedChildren(TrackedType.CLOB, rowChildren);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<InputStream, InputStreamTracker> getTrackedInputStreams() {
-    return trackedInputStreams;
+    return connectionTracker.getTrackedChildren(TrackedType.INPUT_STREAM, rowChildren);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<NClob, NClobTrackerImpl> getTrackedNClobs() {
-    return trackedNClobs;
+    return connectionTracker.getTrackedChildren(TrackedType.NCLOB, rowChildren);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Reader, ReaderTracker> getTrackedReaders() {
-    return trackedReaders;
+    return connectionTracker.getTrackedChildren(TrackedType.READER, rowChildren);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Ref, RefTrackerImpl> getTrackedRefs() {
-    return trackedRefs;
+    return connectionTracker.getTrackedChildren(TrackedType.REF, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSetMetaData, ResultSetMetaDataTrackerImpl> getTrackedResultSetMetaDatas() {
-    return trackedResultSetMetaDatas;
+    return connectionTracker.getTrackedChildren(TrackedType.RESULT_SET_META_DATA, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<RowId, RowIdTrackerImpl> getTrackedRowIds() {
-    return trackedRowIds;
+    return connectionTracker.getTrackedChildren(TrackedType.ROW_ID, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLXML, SQLXMLTrackerImpl> getTrackedSQLXMLs() {
-    return trackedSQLXMLs;
+    return connectionTracker.getTrackedChildren(TrackedType.SQLXML, rowChildren);
   }
 
   @Override
   protected ArrayTrackerImpl wrapArray(Array array) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedArrays, array,
+    return ConnectionTrackerImpl.adopt(children, array,
         () -> (ArrayTrackerImpl) super.wrapArray(array),
-        ArrayTrackerImpl::getWrapped
+        ArrayTrackerImpl::setParent
     );
   }
 
   @Override
   protected BlobTrackerImpl wrapBlob(Blob blob) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedBlobs, blob,
+    BlobTrackerImpl tracker = ConnectionTrackerImpl.adopt(rowChildren, blob,
         () -> (BlobTrackerImpl) super.wrapBlob(blob),
-        BlobTrackerImpl::getWrapped
+        BlobTrackerImpl::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(this);
+    }
+    return tracker;
   }
 
   @Override
   protected ClobTrackerImpl wrapClob(Clob clob) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedClobs, clob,
+    ClobTrackerImpl tracker = ConnectionTrackerImpl.adopt(rowChildren, clob,
         () -> (ClobTrackerImpl) super.wrapClob(clob),
-        ClobTrackerImpl::getWrapped
+        ClobTrackerImpl::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(this);
+    }
+    return tracker;
   }
 
   @Override
   protected InputStreamTracker wrapInputStream(InputStream in) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedInputStreams, in,
+    InputStreamTracker tracker = ConnectionTrackerImpl.adopt(
+        rowChildren, in,
         () -> (InputStreamTracker) super.wrapInputStream(in),
-        InputStreamTracker::getWrapped
+        InputStreamTracker::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(this);
+    }
+    return tracker;
   }
 
   @Override
   protected NClobTrackerImpl wrapNClob(NClob nclob) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedNClobs, nclob,
+    NClobTrackerImpl tracker = ConnectionTrackerImpl.adopt(rowChildren, nclob,
         () -> (NClobTrackerImpl) super.wrapNClob(nclob),
-        NClobTrackerImpl::getWrapped
+        NClobTrackerImpl::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(this);
+    }
+    return tracker;
   }
 
   @Override
   protected ReaderTracker wrapReader(Reader in) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedReaders, in,
+    ReaderTracker tracker = ConnectionTrackerImpl.adopt(
+        rowChildren, in,
         () -> (ReaderTracker) super.wrapReader(in),
-        ReaderTracker::getWrapped
+        ReaderTracker::setParent
     );
+    if (tracker != null) {
+      tracker.setMeteredBy(this);
+    }
+    return tracker;
   }
 
   @Override
   protected RefTrackerImpl wrapRef(Ref ref) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedRefs, ref,
+    return ConnectionTrackerImpl.adopt(children, ref,
         () -> (RefTrackerImpl) super.wrapRef(ref),
-        RefTrackerImpl::getWrapped
+        RefTrackerImpl::setParent
     );
   }
 
   @Override
   protected ResultSetMetaDataTrackerImpl wrapResultSetMetaData(ResultSetMetaData metaData) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedResultSetMetaDatas, metaData,
+    return ConnectionTrackerImpl.adopt(children, metaData,
         () -> (ResultSetMetaDataTrackerImpl) super.wrapResultSetMetaData(metaData),
-        ResultSetMetaDataTrackerImpl::getWrapped
+        ResultSetMetaDataTrackerImpl::setParent
     );
   }
 
   @Override
   protected RowIdTrackerImpl wrapRowId(RowId rowId) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedRowIds, rowId,
+    return ConnectionTrackerImpl.adopt(children, rowId,
         () -> (RowIdTrackerImpl) super.wrapRowId(rowId),
-        RowIdTrackerImpl::getWrapped
+        RowIdTrackerImpl::setParent
     );
   }
 
   @Override
   protected SQLXMLTrackerImpl wrapSQLXML(SQLXML sqlXml) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedSQLXMLs, sqlXml,
+    return ConnectionTrackerImpl.adopt(rowChildren, sqlXml,
         () -> (SQLXMLTrackerImpl) super.wrapSQLXML(sqlXml),
-        SQLXMLTrackerImpl::getWrapped
+        SQLXMLTrackerImpl::setParent
     );
   }
 
+  @Override
+  public byte[] getBytes(int columnIndex) throws SQLException {
+    byte[] bytes = super.getBytes(columnIndex);
+    if (bytes != null) {
+      bytesRead += bytes.length;
+    }
+    return bytes;
+  }
+
+  @Override
+  public byte[] getBytes(String columnLabel) throws SQLException {
+    byte[] bytes = super.getBytes(columnLabel);
+    if (bytes != null) {
+      bytesRead += bytes.length;
+    }
+    return bytes;
+  }
+
+  @Override
+  public String getString(int columnIndex) throws SQLException {
+    String str = super.getString(columnIndex);
+    if (str != null) {
+      charsRead += str.length();
+    }
+    return str;
+  }
+
+  @Override
+  public String getString(String columnLabel) throws SQLException {
+    String str = super.getString(columnLabel);
+    if (str != null) {
+      charsRead += str.length();
+    }
+    return str;
+  }
+
+  @Override
+  public String getNString(int columnIndex) throws SQLException {
+    String str = super.getNString(columnIndex);
+    if (str != null) {
+      charsRead += str.length();
+    }
+    return str;
+  }
+
+  @Override
+  public String getNString(String columnLabel) throws SQLException {
+    String str = super.getNString(columnLabel);
+    if (str != null) {
+      charsRead += str.length();
+    }
+    return str;
+  }
+
+  /**
+   * Releases the values obtained from the previous row after moving to another row, when
+   * {@linkplain ConnectionTrackerImpl#setRowScoped(boolean) row-scoped}.  The cursor has already moved, so a failure to
+   * release is logged instead of thrown.
+   *
+   * @param  sourceMethod  The method that moved the cursor
+   */
+  private void releaseRow(String sourceMethod) {
+    if (rowScoped && !rowChildren.isEmpty()) {
+      Throwable t0 = ConnectionTrackerImpl.closeAndCatch(null, logger, ResultSetTrackerImpl.class, sourceMethod, "trackedInputStreams", connectionTracker.drainChildren(TrackedType.INPUT_STREAM, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, sourceMethod, "trackedReaders", connectionTracker.drainChildren(TrackedType.READER, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, sourceMethod, "trackedBlobs", connectionTracker.drainChildren(TrackedType.BLOB, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, sourceMethod, "trackedClobs", connectionTracker.drainChildren(TrackedType.CLOB, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, sourceMethod, "trackedNClobs", connectionTracker.drainChildren(TrackedType.NCLOB, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, sourceMethod, "trackedSQLXMLs", connectionTracker.drainChildren(TrackedType.SQLXML, rowChildren));
+      if (t0 != null) {
+        logger.logp(Level.WARNING, ResultSetTrackerImpl.class.getName(), sourceMethod,
+            "Unable to release the values obtained from the previous row", t0);
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
+   * <p>When {@linkplain ConnectionTrackerImpl#setRowScoped(boolean) row-scoped}, releases the values obtained from
+   * the previous row once the cursor has moved.</p>
+   */
+  @Override
+  public boolean next() throws SQLException {
+    boolean hasNext = super.next();
+    releaseRow("next()");
+    if (hasNext) {
+      if (++rowsRead == maxRows) {
+        // No more rows returned by the driver
+        exhausted = true;
+      }
+    } else {
+      exhausted = true;
+    }
+    return hasNext;
+  }
+
+  @Override
+  public boolean isAfterLast() throws SQLException {
+    boolean afterLast = super.isAfterLast();
+    if (afterLast) {
+      exhausted = true;
+    }
+    return afterLast;
+  }
+
+  @Override
+  public boolean isLast() throws SQLException {
+    boolean last = super.isLast();
+    if (last) {
+      exhausted = true;
+    }
+    return last;
+  }
+
+  @Override
+  public boolean previous() throws SQLException {
+    boolean onRow = super.previous();
+    releaseRow("previous()");
+    return onRow;
+  }
+
+  @Override
+  public boolean first() throws SQLException {
+    boolean onRow = super.first();
+    releaseRow("first()");
+    return onRow;
+  }
+
+  @Override
+  public boolean last() throws SQLException {
+    boolean onRow = super.last();
+    releaseRow("last()");
+    if (onRow) {
+      exhausted = true;
+    }
+    return onRow;
+  }
+
+  @Override
+  public void beforeFirst() throws SQLException {
+    super.beforeFirst();
+    releaseRow("beforeFirst()");
+  }
+
+  @Override
+  public void afterLast() throws SQLException {
+    super.afterLast();
+    releaseRow("afterLast()");
+    exhausted = true;
+  }
+
+  @Override
+  public boolean absolute(int row) throws SQLException {
+    boolean onRow = super.absolute(row);
+    releaseRow("absolute(int)");
+    return onRow;
+  }
+
+  @Override
+  public boolean relative(int rows) throws SQLException {
+    boolean onRow = super.relative(rows);
+    releaseRow("relative(int)");
+    return onRow;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>When {@linkplain ConnectionTrackerImpl#setCancelUnexhausted(boolean) enabled} and the results of a query are
+   * not known to have been read to the end, cancels the statement before closing, so drivers that would otherwise read
+   * the remaining rows do not.  The statement is not canceled when this result set has already been closed by the
+   * driver, such as when its statement executed again.  An error from closing caused by the cancel is ignored.</p>
+   *
    * @see  ArrayTrackerImpl#close()
    * @see  BlobTrackerImpl#close()
    * @see  ClobTrackerImpl#close()
@@ -258,25 +617,76 @@ public class ResultSetTrackerImpl extends ResultSetWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "unchecked"})
   public void close() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedArrays", trackedArrays);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedBlobs", trackedBlobs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedClobs", trackedClobs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedInputStreams", trackedInputStreams);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedNClobs", trackedNClobs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedReaders", trackedReaders);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedRefs", trackedRefs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedResultSetMetaDatas", trackedResultSetMetaDatas);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedRowIds", trackedRowIds);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedSQLXMLs", trackedSQLXMLs);
+    if (!children.isEmpty() || !rowChildren.isEmpty()) {
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedArrays", connectionTracker.drainChildren(TrackedType.ARRAY, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedBlobs", connectionTracker.drainChildren(TrackedType.BLOB, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedClobs", connectionTracker.drainChildren(TrackedType.CLOB, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedInputStreams", connectionTracker.drainChildren(TrackedType.INPUT_STREAM, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedNClobs", connectionTracker.drainChildren(TrackedType.NCLOB, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedReaders", connectionTracker.drainChildren(TrackedType.READER, rowChildren));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedRefs", connectionTracker.drainChildren(TrackedType.REF, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedResultSetMetaDatas", connectionTracker.drainChildren(TrackedType.RESULT_SET_META_DATA, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedRowIds", connectionTracker.drainChildren(TrackedType.ROW_ID, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, ResultSetTrackerImpl.class, "close()", "trackedSQLXMLs", connectionTracker.drainChildren(TrackedType.SQLXML, rowChildren));
+    }
+    boolean canceled = false;
+    if (cancel) {
+      cancel = false;
+      try {
+        // Closed by the driver when the statement executed again, in which case canceling would cancel that execution
+        if (!getWrapped().isClosed()) {
+          statement.cancel();
+          canceled = true;
+        }
+      } catch (SQLException e) {
+        logger.log(Level.FINE, "Unable to cancel statement, closing without cancel", e);
+      }
+    }
     try {
       super.close();
     } catch (Throwable t) {
-      t0 = Throwables.addSuppressed(t0, t);
+      if (!canceled || !isCancellation(t)) {
+        t0 = Throwables.addSuppressed(t0, t);
+      }
     }
     if (t0 != null) {
       throw Throwables.wrap(t0, SQLException.class, SQLException::new);
     }
   }
+
+  /**
+   * The SQL states of cancellation by common drivers: query canceled (PostgreSQL and DB2), query interrupted (MySQL and
+   * MariaDB), and operation canceled (SQL Server and ODBC).
+   */
+  private static final String[] CANCELLATION_SQL_STATES = {"57014", "70100", "HY008"};
+
+  /**
+   * The vendor error code of cancellation by Oracle: <code>ORA-01013: user requested cancel of current
+   * operation</code>.
+   */
+  private static final int ORACLE_CANCELLATION_ERROR_CODE = 1013;
+
+  /**
+   * Checks if an exception is the result of canceling the statement.
+   */
+  private static boolean isCancellation(Throwable t) {
+    if (t instanceof SQLTimeoutException) {
+      return true;
+    }
+    if (t instanceof SQLException) {
+      SQLException e = (SQLException) t;
+      String sqlState = e.getSQLState();
+      if (sqlState != null) {
+        for (String cancellationSqlState : CANCELLATION_SQL_STATES) {
+          if (cancellationSqlState.equals(sqlState)) {
+            return true;
+          }
+        }
+      }
+      return e.getErrorCode() == ORACLE_CANCELLATION_ERROR_CODE && "72000".equals(sqlState);
+    }
+    return false;
+  }
 }
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,8 +23,6 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.SQLDataWrapperImpl;
 import com.aoapps.sql.wrapper.SQLInputWrapperImpl;
@@ -34,8 +32,6 @@ import java.sql.SQLException;
 import java.sql.SQLInput;
 import java.sql.SQLOutput;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -50,23 +46,36 @@ public class SQLDataTrackerImpl extends SQLDataWrapperImpl
 
   private static final Logger logger = Logger.getLogger(SQLDataTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link SQLData} tracker.
    */
   public SQLDataTrackerImpl(ConnectionTrackerImpl connectionTracker, SQLData wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.SQL_DATA, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.SQL_DATA, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -74,43 +83,74 @@ public class SQLDataTrackerImpl extends SQLDataWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<SQLInput, SQLInputTrackerImpl> trackedSQLInputs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLOutput, SQLOutputTrackerImpl> trackedSQLOutputs = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.SQL_DATA, this);
+    }
+    connectionTracker.untrack(TrackedType.SQL_DATA, getWrapped(), this);
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * The objects obtained through this data, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLInput, SQLInputTrackerImpl> getTrackedSQLInputs() {
-    return trackedSQLInputs;
+    return connectionTracker.getTrackedChildren(TrackedType.SQL_INPUT, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLOutput, SQLOutputTrackerImpl> getTrackedSQLOutputs() {
-    return trackedSQLOutputs;
+    return connectionTracker.getTrackedChildren(TrackedType.SQL_OUTPUT, children);
   }
 
   @Override
   protected SQLInputWrapperImpl wrapSQLInput(SQLInput sqlInput) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedSQLInputs, sqlInput,
+    return ConnectionTrackerImpl.adopt(
+        children, sqlInput,
         () -> (SQLInputTrackerImpl) super.wrapSQLInput(sqlInput),
-        SQLInputTrackerImpl::getWrapped
+        SQLInputTrackerImpl::setParent
     );
   }
 
   @Override
   protected SQLOutputWrapperImpl wrapSQLOutput(SQLOutput sqlOutput) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedSQLOutputs, sqlOutput,
+    return ConnectionTrackerImpl.adopt(
+        children, sqlOutput,
         () -> (SQLOutputTrackerImpl) super.wrapSQLOutput(sqlOutput),
-        SQLOutputTrackerImpl::getWrapped
+        SQLOutputTrackerImpl::setParent
     );
   }
 
@@ -123,10 +163,12 @@ public class SQLDataTrackerImpl extends SQLDataWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "unchecked"})
   public void close() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLDataTrackerImpl.class, "close()", "trackedSQLInputs", trackedSQLInputs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLDataTrackerImpl.class, "close()", "trackedSQLOutputs", trackedSQLOutputs);
+    if (!children.isEmpty()) {
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLDataTrackerImpl.class, "close()", "trackedSQLInputs", connectionTracker.drainChildren(TrackedType.SQL_INPUT, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLDataTrackerImpl.class, "close()", "trackedSQLOutputs", connectionTracker.drainChildren(TrackedType.SQL_OUTPUT, children));
+    }
     try {
       super.close();
     } catch (Throwable t) {
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,8 +23,6 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.SQLInputWrapperImpl;
 import java.io.InputStream;
@@ -39,8 +37,6 @@ import java.sql.SQLException;
 import java.sql.SQLInput;
 import java.sql.SQLXML;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -55,23 +51,36 @@ public class SQLInputTrackerImpl extends SQLInputWrapperImpl
 
   private static final Logger logger = Logger.getLogger(SQLInputTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link SQLInput} tracker.
    */
   public SQLInputTrackerImpl(ConnectionTrackerImpl connectionTracker, SQLInput wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.SQL_INPUT, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.SQL_INPUT, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -79,148 +88,186 @@ public class SQLInputTrackerImpl extends SQLInputWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The children of the first object that obtained this input, which closes it when closed.
+   */
+  private TrackedChildren parent; // Guarded by this
+
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  private final Map<Array, ArrayTrackerImpl> trackedArrays = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Blob, BlobTrackerImpl> trackedBlobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Clob, ClobTrackerImpl> trackedClobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<InputStream, InputStreamTracker> trackedInputStreams = synchronizedMap(new IdentityHashMap<>());
-  private final Map<NClob, NClobTrackerImpl> trackedNClobs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Reader, ReaderTracker> trackedReaders = synchronizedMap(new IdentityHashMap<>());
-  private final Map<Ref, RefTrackerImpl> trackedRefs = synchronizedMap(new IdentityHashMap<>());
-  private final Map<RowId, RowIdTrackerImpl> trackedRowIds = synchronizedMap(new IdentityHashMap<>());
-  private final Map<SQLXML, SQLXMLTrackerImpl> trackedSQLXMLs = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Sets the parent when not already owned.
+   */
+  synchronized void setParent(TrackedChildren newParent) {
+    if (parent == null) {
+      parent = newParent;
+      newParent.added(getWrapped(), this);
+    }
+  }
+
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection and parent then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    TrackedChildren p;
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      p = parent;
+      parent = null;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.SQL_INPUT, this);
+    }
+    connectionTracker.untrack(TrackedType.SQL_INPUT, getWrapped(), this);
+    if (p != null) {
+      p.removed(getWrapped(), this);
+    }
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * The objects obtained through this input, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Array, ArrayTrackerImpl> getTrackedArrays() {
-    return trackedArrays;
+    return connectionTracker.getTrackedChildren(TrackedType.ARRAY, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Blob, BlobTrackerImpl> getTrackedBlobs() {
-    return trackedBlobs;
+    return connectionTracker.getTrackedChildren(TrackedType.BLOB, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Clob, ClobTrackerImpl> getTrackedClobs() {
-    return trackedClobs;
+    return connectionTracker.getTrackedChildren(TrackedType.CLOB, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<InputStream, InputStreamTracker> getTrackedInputStreams() {
-    return trackedInputStreams;
+    return connectionTracker.getTrackedChildren(TrackedType.INPUT_STREAM, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<NClob, NClobTrackerImpl> getTrackedNClobs() {
-    return trackedNClobs;
+    return connectionTracker.getTrackedChildren(TrackedType.NCLOB, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Reader, ReaderTracker> getTrackedReaders() {
-    return trackedReaders;
+    return connectionTracker.getTrackedChildren(TrackedType.READER, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<Ref, RefTrackerImpl> getTrackedRefs() {
-    return trackedRefs;
+    return connectionTracker.getTrackedChildren(TrackedType.REF, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<RowId, RowIdTrackerImpl> getTrackedRowIds() {
-    return trackedRowIds;
+    return connectionTracker.getTrackedChildren(TrackedType.ROW_ID, children);
   }
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<SQLXML, SQLXMLTrackerImpl> getTrackedSQLXMLs() {
-    return trackedSQLXMLs;
+    return connectionTracker.getTrackedChildren(TrackedType.SQLXML, children);
   }
 
   @Override
   protected ArrayTrackerImpl wrapArray(Array array) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedArrays, array,
+    return ConnectionTrackerImpl.adopt(children, array,
         () -> (ArrayTrackerImpl) super.wrapArray(array),
-        ArrayTrackerImpl::getWrapped
+        ArrayTrackerImpl::setParent
     );
   }
 
   @Override
   protected BlobTrackerImpl wrapBlob(Blob blob) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedBlobs, blob,
+    return ConnectionTrackerImpl.adopt(children, blob,
         () -> (BlobTrackerImpl) super.wrapBlob(blob),
-        BlobTrackerImpl::getWrapped
+        BlobTrackerImpl::setParent
     );
   }
 
   @Override
   protected ClobTrackerImpl wrapClob(Clob clob) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedClobs, clob,
+    return ConnectionTrackerImpl.adopt(children, clob,
         () -> (ClobTrackerImpl) super.wrapClob(clob),
-        ClobTrackerImpl::getWrapped
+        ClobTrackerImpl::setParent
     );
   }
 
   @Override
   protected InputStreamTracker wrapInputStream(InputStream in) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedInputStreams, in,
+    return ConnectionTrackerImpl.adopt(
+        children, in,
         () -> (InputStreamTracker) super.wrapInputStream(in),
-        InputStreamTracker::getWrapped
+        InputStreamTracker::setParent
     );
   }
 
   @Override
   protected NClobTrackerImpl wrapNClob(NClob nclob) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedNClobs, nclob,
+    return ConnectionTrackerImpl.adopt(children, nclob,
         () -> (NClobTrackerImpl) super.wrapNClob(nclob),
-        NClobTrackerImpl::getWrapped
+        NClobTrackerImpl::setParent
     );
   }
 
   @Override
   protected ReaderTracker wrapReader(Reader in) {
-    return ConnectionTrackerImpl.getIfAbsent(
-        trackedReaders, in,
+    return ConnectionTrackerImpl.adopt(
+        children, in,
         () -> (ReaderTracker) super.wrapReader(in),
-        ReaderTracker::getWrapped
+        ReaderTracker::setParent
     );
   }
 
   @Override
   protected RefTrackerImpl wrapRef(Ref ref) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedRefs, ref,
+    return ConnectionTrackerImpl.adopt(children, ref,
         () -> (RefTrackerImpl) super.wrapRef(ref),
-        RefTrackerImpl::getWrapped
+        RefTrackerImpl::setParent
     );
   }
 
   @Override
   protected RowIdTrackerImpl wrapRowId(RowId rowId) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedRowIds, rowId,
+    return ConnectionTrackerImpl.adopt(children, rowId,
         () -> (RowIdTrackerImpl) super.wrapRowId(rowId),
-        RowIdTrackerImpl::getWrapped
+        RowIdTrackerImpl::setParent
     );
   }
 
   @Override
   protected SQLXMLTrackerImpl wrapSQLXML(SQLXML sqlXml) {
-    return ConnectionTrackerImpl.getIfAbsent(trackedSQLXMLs, sqlXml,
+    return ConnectionTrackerImpl.adopt(children, sqlXml,
         () -> (SQLXMLTrackerImpl) super.wrapSQLXML(sqlXml),
-        SQLXMLTrackerImpl::getWrapped
+        SQLXMLTrackerImpl::setParent
     );
   }
 
@@ -240,17 +287,19 @@ public class SQLInputTrackerImpl extends SQLInputWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "unchecked"})
   public void close() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedArrays", trackedArrays);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedBlobs", trackedBlobs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedClobs", trackedClobs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedInputStreams", trackedInputStreams);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedNClobs", trackedNClobs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedReaders", trackedReaders);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedRefs", trackedRefs);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedRowIds", trackedRowIds);
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedSQLXMLs", trackedSQLXMLs);
+    if (!children.isEmpty()) {
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedArrays", connectionTracker.drainChildren(TrackedType.ARRAY, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedBlobs", connectionTracker.drainChildren(TrackedType.BLOB, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedClobs", connectionTracker.drainChildren(TrackedType.CLOB, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedInputStreams", connectionTracker.drainChildren(TrackedType.INPUT_STREAM, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedNClobs", connectionTracker.drainChildren(TrackedType.NCLOB, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedReaders", connectionTracker.drainChildren(TrackedType.READER, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedRefs", connectionTracker.drainChildren(TrackedType.REF, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedRowIds", connectionTracker.drainChildren(TrackedType.ROW_ID, children));
+      t0 = ConnectionTrackerImpl.closeAndCatch(t0, logger, SQLInputTrackerImpl.class, "close()", "trackedSQLXMLs", connectionTracker.drainChildren(TrackedType.SQLXML, children));
+    }
     try {
       super.close();
     } catch (Throwable t) {
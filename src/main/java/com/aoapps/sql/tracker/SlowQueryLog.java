@@ -0,0 +1,157 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs executions of {@linkplain PreparedStatement prepared} and {@linkplain CallableStatement callable} statements
+ * that take longer than a threshold.  Each is logged at level {@link Level#WARNING} with its SQL, bound parameters,
+ * duration, rows affected, and allocation call site.
+ *
+ * <p>While enabled, the parameters set by index are captured into a buffer per statement, which is reused across
+ * executions so setting a parameter does not allocate.  At most {@link #MAX_PARAMETERS} parameters are captured, and
+ * each is truncated to {@link #MAX_PARAMETER_LENGTH} characters when logged.  Streams and large objects are logged by
+ * type and length only.  Parameters of callable statements set by name are not captured.  As with the statement
+ * itself, captured values are referenced until {@linkplain PreparedStatement#clearParameters() cleared}, set again, or
+ * the statement closed.</p>
+ *
+ * <p>The rows affected are logged for updates and batches.  The rows returned by queries are not known when the
+ * execution completes.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class SlowQueryLog {
+
+  /** Make no instances. */
+  private SlowQueryLog() {
+    throw new AssertionError();
+  }
+
+  private static final Logger logger = Logger.getLogger(SlowQueryLog.class.getName());
+
+  /**
+   * The system property that sets the default threshold, in milliseconds.
+   */
+  public static final String THRESHOLD_PROPERTY = SlowQueryLog.class.getName() + ".threshold";
+
+  /**
+   * The threshold in nanoseconds, or {@code 0} when disabled.
+   */
+  private static volatile long threshold;
+
+  static {
+    setThreshold(SystemProperties.getNonNegativeLong(logger, THRESHOLD_PROPERTY, 0), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * The system property that sets the maximum number of parameters captured per statement.
+   */
+  public static final String MAX_PARAMETERS_PROPERTY = SlowQueryLog.class.getName() + ".maxParameters";
+
+  /**
+   * The maximum number of parameters captured per statement.  Parameters beyond this are only counted.
+   */
+  public static final int MAX_PARAMETERS = SystemProperties.getNonNegativeInt(logger, MAX_PARAMETERS_PROPERTY, 100);
+
+  /**
+   * The system property that sets the maximum length of each parameter logged.
+   */
+  public static final String MAX_PARAMETER_LENGTH_PROPERTY = SlowQueryLog.class.getName() + ".maxParameterLength";
+
+  /**
+   * The maximum number of characters logged per parameter.
+   */
+  public static final int MAX_PARAMETER_LENGTH = SystemProperties.getNonNegativeInt(
+      logger, MAX_PARAMETER_LENGTH_PROPERTY, 100);
+
+  /**
+   * Gets the threshold.
+   *
+   * @return  The threshold in the given unit or {@code 0} when disabled
+   */
+  public static long getThreshold(TimeUnit unit) {
+    return unit.convert(threshold, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Sets the threshold.
+   *
+   * @param  threshold  The threshold or {@code 0} to disable
+   *
+   * @throws  IllegalArgumentException  when {@code threshold} is negative
+   */
+  public static void setThreshold(long threshold, TimeUnit unit) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold < 0: " + threshold);
+    }
+    SlowQueryLog.threshold = unit.toNanos(threshold);
+  }
+
+  /**
+   * Checks if enabled, in which case parameters are captured.
+   */
+  static boolean isEnabled() {
+    return threshold != 0;
+  }
+
+  /**
+   * Logs an execution when longer than the threshold.
+   *
+   * @param  statement  The tracker of the statement
+   * @param  sql        The SQL or {@code null} when unknown
+   * @param  binds      The parameters or {@code null} when none captured
+   * @param  nanos      The time spent executing, in nanoseconds
+   * @param  rows       The rows affected or {@code -1} when unknown
+   */
+  static void executed(AllocationStacktraceProvider statement, TrackedType type, String sql, Binds binds, long nanos, long rows) {
+    long t = threshold;
+    if (t != 0 && nanos >= t && logger.isLoggable(Level.WARNING)) {
+      StringBuilder message = new StringBuilder();
+      message.append("Slow ").append(type).append(" execution: ")
+          .append(TimeUnit.NANOSECONDS.toMillis(nanos)).append(" ms");
+      if (rows != -1) {
+        message.append(", rows=").append(rows);
+      }
+      message.append(", sql=").append(sql).append(", parameters=[");
+      if (binds != null) {
+        binds.appendTo(message, MAX_PARAMETER_LENGTH);
+      }
+      message.append(']');
+      Exception allocationStacktrace = statement.getAllocationStacktrace();
+      if (allocationStacktrace == null) {
+        StackTraceElement[] callSite = statement.getAllocationCallSite().getStackTrace();
+        if (callSite.length != 0) {
+          message.append(", allocated at ").append(callSite[0]);
+        }
+      }
+      logger.log(Level.WARNING, message.toString(), allocationStacktrace);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the execution time of statements into a {@link LatencyHistogram} per SQL.  Register as a
+ * {@link TrackerListener} on a {@linkplain DriverTracker#addListener(com.aoapps.sql.tracker.TrackerListener) driver} or
+ * {@linkplain ConnectionTrackerImpl#addListener(com.aoapps.sql.tracker.TrackerListener) connection}.
+ *
+ * <p>The SQL of prepared and callable statements is the SQL they were prepared with.  Batches of plain
+ * {@linkplain Statement statements}, which have no single SQL, are not recorded.</p>
+ *
+ * <p>The number of distinct SQL is bounded.  When exceeded, the least recently used SQL are evicted, down to 90% of
+ * the bound.  Recency is approximate, tracked in epochs that advance on each eviction.  SQL being recorded at the time
+ * are not evicted.</p>
+ *
+ * <p>For per-interval percentiles, call {@link #getSnapshotsAndReset()} periodically.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class SqlLatencies implements TrackerListener {
+
+  /**
+   * The default maximum number of distinct SQL.
+   */
+  public static final int DEFAULT_MAX_SQL = 1000;
+
+  private final int maxSql;
+
+  private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  private final Object evictionLock = new Object();
+
+  /**
+   * The current eviction epoch.
+   */
+  private volatile int epoch;
+
+  /**
+   * Creates a new set of histograms with a bound of {@link #DEFAULT_MAX_SQL}.
+   */
+  public SqlLatencies() {
+    this(DEFAULT_MAX_SQL);
+  }
+
+  /**
+   * Creates a new set of histograms.
+   *
+   * @param  maxSql  The maximum number of distinct SQL
+   */
+  public SqlLatencies(int maxSql) {
+    if (maxSql < 1) {
+      throw new IllegalArgumentException("maxSql < 1: " + maxSql);
+    }
+    this.maxSql = maxSql;
+  }
+
+  /**
+   * Records the execution time of statements with SQL.
+   */
+  @Override
+  public void executeEnd(TrackedType type, Statement statement, String sql, long nanos) {
+    if (sql != null) {
+      record(sql, nanos);
+    }
+  }
+
+  /**
+   * Records a duration for the given SQL, evicting the least recently used SQL when the bound is exceeded.
+   *
+   * @param  nanos  The duration in nanoseconds
+   */
+  public void record(String sql, long nanos) {
+    while (true) {
+      LatencyHistogram histogram = histograms.get(sql);
+      if (histogram == null) {
+        histogram = histograms.computeIfAbsent(sql, k -> {
+          LatencyHistogram newHistogram = new LatencyHistogram();
+          // Not evicted before first use
+          newHistogram.lastUsed = epoch;
+          return newHistogram;
+        });
+        if (histograms.size() > maxSql) {
+          evict();
+        }
+      }
+      histogram.lastUsed = epoch;
+      if (histogram.recordIfActive(nanos)) {
+        return;
+      }
+      // Retired by a concurrent eviction or reset, which may not have removed it yet
+      histograms.remove(sql, histogram);
+    }
+  }
+
+  /**
+   * Evicts the least recently used SQL down to 90% of the bound, then advances the epoch.
+   */
+  private void evict() {
+    synchronized (evictionLock) {
+      int size = histograms.size();
+      if (size <= maxSql) {
+        // Already evicted by another thread
+        return;
+      }
+      List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+      // Sorts a copy of the recency, which is written concurrently, with the index of each entry in the low bits
+      int count = entries.size();
+      long[] order = new long[count];
+      for (int i = 0; i < count; i++) {
+        order[i] = ((long) entries.get(i).getValue().lastUsed << Integer.SIZE) | i;
+      }
+      Arrays.sort(order);
+      int target = maxSql - maxSql / 10;
+      for (int i = 0, evict = count - target; i < evict; i++) {
+        Map.Entry<String, LatencyHistogram> entry = entries.get((int) order[i]);
+        LatencyHistogram histogram = entry.getValue();
+        if (histogram.retire() && histograms.remove(entry.getKey(), histogram)) {
+          evictionCount.increment();
+        }
+      }
+      epoch++;
+    }
+  }
+
+  /**
+   * Gets the maximum number of distinct SQL.
+   */
+  public int getMaxSql() {
+    return maxSql;
+  }
+
+  /**
+   * Gets the number of distinct SQL currently recorded.
+   */
+  public int size() {
+    return histograms.size();
+  }
+
+  /**
+   * Gets the number of SQL evicted to stay within the bound.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  /**
+   * Gets the histogram of the given SQL.
+   *
+   * @return  The histogram or {@code null} when not recorded or evicted
+   */
+  public LatencyHistogram get(String sql) {
+    return histograms.get(sql);
+  }
+
+  /**
+   * Gets a snapshot of the histogram of each SQL.
+   *
+   * @return  The snapshots, in no particular order
+   */
+  public Map<String, LatencyHistogram.Snapshot> getSnapshots() {
+    Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+    }
+    return snapshots;
+  }
+
+  /**
+   * Gets a snapshot of the histogram of each SQL, resetting each histogram.  SQL with nothing recorded since the last
+   * reset are removed.  Durations recorded concurrently are counted in either this snapshot or the following one,
+   * never lost.
+   *
+   * @return  The snapshots with at least one duration recorded, in no particular order
+   */
+  public Map<String, LatencyHistogram.Snapshot> getSnapshotsAndReset() {
+    Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      LatencyHistogram.Snapshot snapshot = histogram.getSnapshotAndReset();
+      if (snapshot.getCount() == 0) {
+        if (histogram.retire()) {
+          histograms.remove(entry.getKey(), histogram);
+          // Recorded between the snapshot and retirement
+          snapshot = histogram.getSnapshotAndReset();
+          if (snapshot.getCount() != 0) {
+            snapshots.put(entry.getKey(), snapshot);
+          }
+        }
+      } else {
+        snapshots.put(entry.getKey(), snapshot);
+      }
+    }
+    return snapshots;
+  }
+
+  /**
+   * Removes all histograms.
+   */
+  public void clear() {
+    histograms.clear();
+  }
+}
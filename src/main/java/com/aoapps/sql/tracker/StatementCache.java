@@ -0,0 +1,284 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import com.aoapps.lang.Throwables;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A per-connection cache of the prepared and callable statements of the wrapped connection, evicting the least
+ * recently used.  Statements are held here only while closed by the application.  Each time a statement is taken from
+ * the cache, it is given a new tracker, so the connection tracks exactly the statements the application has open.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class StatementCache {
+
+  /**
+   * Identifies interchangeable statements, by their SQL and every option they were prepared with.
+   */
+  static final class Key {
+
+    /**
+     * Indicates an option not specified when preparing.
+     */
+    static final int UNSPECIFIED = Integer.MIN_VALUE;
+
+    private final boolean callable;
+    private final String sql;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private final int resultSetHoldability;
+    private final int autoGeneratedKeys;
+    private final int[] columnIndexes;
+    private final String[] columnNames;
+    private final int hash;
+
+    @SuppressWarnings("AssignmentToCollectionOrArrayFieldFromParameter")
+    Key(
+        boolean callable,
+        String sql,
+        int resultSetType,
+        int resultSetConcurrency,
+        int resultSetHoldability,
+        int autoGeneratedKeys,
+        int[] columnIndexes,
+        String[] columnNames
+    ) {
+      this.callable = callable;
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+      this.resultSetHoldability = resultSetHoldability;
+      this.autoGeneratedKeys = autoGeneratedKeys;
+      this.columnIndexes = (columnIndexes == null) ? null : columnIndexes.clone();
+      this.columnNames = (columnNames == null) ? null : columnNames.clone();
+      int h = Boolean.hashCode(callable);
+      h = h * 31 + sql.hashCode();
+      h = h * 31 + resultSetType;
+      h = h * 31 + resultSetConcurrency;
+      h = h * 31 + resultSetHoldability;
+      h = h * 31 + autoGeneratedKeys;
+      h = h * 31 + Arrays.hashCode(columnIndexes);
+      h = h * 31 + Arrays.hashCode(columnNames);
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return
+          hash == other.hash
+              && callable == other.callable
+              && resultSetType == other.resultSetType
+              && resultSetConcurrency == other.resultSetConcurrency
+              && resultSetHoldability == other.resultSetHoldability
+              && autoGeneratedKeys == other.autoGeneratedKeys
+              && sql.equals(other.sql)
+              && Arrays.equals(columnIndexes, other.columnIndexes)
+              && Arrays.equals(columnNames, other.columnNames);
+    }
+  }
+
+  private final DriverTracker driver;
+
+  private final LinkedHashMap<Key, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true); // Guarded by this
+
+  private int maxSize; // Guarded by this
+
+  private boolean closed; // Guarded by this
+
+  private long hitCount; // Guarded by this
+  private long missCount; // Guarded by this
+  private long evictionCount; // Guarded by this
+
+  /**
+   * @param  driver  The driver to also count hits, misses, and evictions, or {@code null} for none
+   */
+  StatementCache(DriverTracker driver, int maxSize) {
+    this.driver = driver;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Sets the maximum number of statements cached, closing any evicted.
+   */
+  Throwable setMaxSize(Throwable t0, int maxSize) {
+    List<PreparedStatement> evicted;
+    synchronized (this) {
+      this.maxSize = maxSize;
+      evicted = evict();
+    }
+    return closeAndCatch(t0, evicted);
+  }
+
+  synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  synchronized long getMissCount() {
+    return missCount;
+  }
+
+  synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Removes a statement from the cache for use.
+   *
+   * @return  The statement or {@code null} when not cached
+   */
+  PreparedStatement take(Key key) {
+    PreparedStatement pstmt;
+    synchronized (this) {
+      if (closed || maxSize == 0) {
+        return null;
+      }
+      pstmt = statements.remove(key);
+      if (pstmt != null) {
+        hitCount++;
+      } else {
+        missCount++;
+      }
+    }
+    if (driver != null) {
+      driver.statementCacheUsed(pstmt != null);
+    }
+    return pstmt;
+  }
+
+  /**
+   * Returns a statement to the cache after resetting its parameters, batch, and warnings.  The statement is closed
+   * instead when the cache is closed or disabled, an equivalent statement is already cached, or it cannot be reset.
+   * A statement already closed, such as by the driver after a fatal error, is not cached.
+   * Closes any statements evicted.
+   */
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  Throwable release(Throwable t0, Key key, PreparedStatement pstmt) {
+    boolean cache;
+    synchronized (this) {
+      cache = !closed && maxSize != 0 && !statements.containsKey(key);
+    }
+    if (cache) {
+      try {
+        if (pstmt.isClosed()) {
+          return t0;
+        }
+        pstmt.clearParameters();
+        pstmt.clearBatch();
+        pstmt.clearWarnings();
+      } catch (Throwable t) {
+        t0 = Throwables.addSuppressed(t0, t);
+        cache = false;
+      }
+    }
+    List<PreparedStatement> evicted = null;
+    if (cache) {
+      synchronized (this) {
+        cache = !closed && maxSize != 0 && statements.putIfAbsent(key, pstmt) == null;
+        if (cache) {
+          evicted = evict();
+        }
+      }
+    }
+    if (!cache) {
+      t0 = closeAndCatch(t0, pstmt);
+    }
+    return closeAndCatch(t0, evicted);
+  }
+
+  /**
+   * Removes the least recently used statements until within the maximum size.
+   *
+   * @return  The statements evicted or {@code null} when none
+   */
+  private List<PreparedStatement> evict() {
+    assert Thread.holdsLock(this);
+    List<PreparedStatement> evicted = null;
+    int toEvict = statements.size() - maxSize;
+    if (toEvict > 0) {
+      evicted = new ArrayList<>(toEvict);
+      Iterator<PreparedStatement> iter = statements.values().iterator();
+      while (toEvict-- > 0) {
+        evicted.add(iter.next());
+        iter.remove();
+      }
+      evictionCount += evicted.size();
+      if (driver != null) {
+        driver.statementCacheEvicted(evicted.size());
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Closes the cache, closing all cached statements.  Statements released afterwards are closed.
+   */
+  Throwable close(Throwable t0) {
+    List<PreparedStatement> toClose;
+    synchronized (this) {
+      closed = true;
+      toClose = new ArrayList<>(statements.values());
+      statements.clear();
+    }
+    return closeAndCatch(t0, toClose);
+  }
+
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  private static Throwable closeAndCatch(Throwable t0, PreparedStatement pstmt) {
+    try {
+      pstmt.close();
+    } catch (Throwable t) {
+      t0 = Throwables.addSuppressed(t0, t);
+    }
+    return t0;
+  }
+
+  private static Throwable closeAndCatch(Throwable t0, List<PreparedStatement> pstmts) {
+    if (pstmts != null) {
+      for (PreparedStatement pstmt : pstmts) {
+        t0 = closeAndCatch(t0, pstmt);
+      }
+    }
+    return t0;
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,16 +23,13 @@
 
 package com.aoapps.sql.tracker;
 
-import static java.util.Collections.synchronizedMap;
-
+import com.aoapps.lang.AutoCloseables;
 import com.aoapps.lang.Throwables;
 import com.aoapps.sql.wrapper.StatementWrapperImpl;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -47,23 +44,36 @@ public class StatementTrackerImpl extends StatementWrapperImpl
 
   private static final Logger logger = Logger.getLogger(StatementTrackerImpl.class.getName());
 
-  private final Exception allocationStacktrace;
+  private final ConnectionTrackerImpl connectionTracker;
+
+  private final AllocationCallSite allocationCallSite;
+
+  private final long allocationTime;
 
   /**
    * Creates a new {@link Statement} tracker.
    */
   public StatementTrackerImpl(ConnectionTrackerImpl connectionTracker, Statement wrapped) {
     super(connectionTracker, wrapped);
-    if (logger.isLoggable(ALLOCATION_STACKTRACE_LOG_LEVEL)) {
-      allocationStacktrace = new Exception("Stack trace at allocation");
-    } else {
-      allocationStacktrace = null;
-    }
+    this.connectionTracker = connectionTracker;
+    allocationCallSite = AllocationStacktraces.capture(TrackedType.STATEMENT, logger);
+    allocationTime = System.nanoTime();
+    connectionTracker.fireOpened(TrackedType.STATEMENT, this);
   }
 
   @Override
   public Exception getAllocationStacktrace() {
-    return allocationStacktrace;
+    return AllocationStacktraces.getStacktrace(allocationCallSite);
+  }
+
+  @Override
+  public AllocationCallSite getAllocationCallSite() {
+    return allocationCallSite;
+  }
+
+  @Override
+  public long getAllocationTime() {
+    return allocationTime;
   }
 
   @Override
@@ -71,30 +81,322 @@ public class StatementTrackerImpl extends StatementWrapperImpl
     return logger;
   }
 
-  private final List<Runnable> onCloseHandlers = Collections.synchronizedList(new ArrayList<>());
+  /**
+   * The onClose handlers, created on first use.
+   */
+  private List<Runnable> onCloseHandlers; // Guarded by this
 
   @Override
-  public void addOnClose(Runnable onCloseHandler) {
+  public synchronized void addOnClose(Runnable onCloseHandler) {
+    if (onCloseHandlers == null) {
+      onCloseHandlers = new ArrayList<>();
+    }
     onCloseHandlers.add(onCloseHandler);
   }
 
-  // Statement
-  private final Map<ResultSet, ResultSetTrackerImpl> trackedResultSets = synchronizedMap(new IdentityHashMap<>());
+  /**
+   * Whether closed, so the object is only counted as closed once.
+   */
+  private boolean closed; // Guarded by this
+
+  /**
+   * Stops tracking by the connection then calls onClose handlers.
+   */
+  private Throwable untrack() {
+    List<Runnable> handlers;
+    boolean wasClosed;
+    synchronized (this) {
+      wasClosed = closed;
+      closed = true;
+      handlers = onCloseHandlers;
+      onCloseHandlers = null;
+    }
+    if (!wasClosed) {
+      AllocationStacktraces.closed(allocationCallSite, allocationTime);
+      connectionTracker.fireClosed(TrackedType.STATEMENT, this);
+    }
+    connectionTracker.untrack(TrackedType.STATEMENT, getWrapped(), this);
+    return ConnectionTrackerImpl.runAndCatch(handlers);
+  }
+
+  /**
+   * The SQL most recently executed, for reporting of the result sets obtained through this statement.
+   */
+  private volatile String sql;
+
+  /**
+   * Gets the SQL most recently executed.
+   *
+   * @return  The SQL or {@code null} when none
+   */
+  final String getSql() {
+    return sql;
+  }
+
+  /**
+   * Whether the application has set the fetch size, which is then left unchanged by adaptive fetch sizes.
+   */
+  private volatile boolean fetchSizeSet;
+
+  /**
+   * Whether an adaptive fetch size has been applied to the wrapped statement.
+   */
+  private boolean fetchSizeApplied;
+
+  /**
+   * The fetch size of the wrapped statement before an adaptive fetch size was applied, restored once no longer
+   * applied.  Not assumed to be {@code 0}, since drivers may have a configured default, or ignore {@code 0} and keep
+   * the last fetch size.
+   */
+  private int originalFetchSize;
+
+  /**
+   * The maximum number of rows set by the application, or {@code 0} for no limit, so result sets that reach it are
+   * known to have been read to the end.
+   */
+  private volatile long maxRows;
+
+  /**
+   * Applies the {@linkplain FetchSizeAdvisor adaptive fetch size} before executing a query.
+   *
+   * @return  Whether adaptive fetch sizes are in effect, so rows read from the results should be recorded
+   */
+  private boolean adaptFetchSize(String sql) throws SQLException {
+    if (sql == null || fetchSizeSet || !FetchSizeAdvisor.isEnabled() || !connectionTracker.isAdaptiveFetchSize()) {
+      return false;
+    }
+    int fetchSize = FetchSizeAdvisor.getFetchSize(sql);
+    if (fetchSize != 0) {
+      if (!fetchSizeApplied) {
+        originalFetchSize = super.getFetchSize();
+      }
+      // Not through this.setFetchSize, which would mark as set by the application
+      super.setFetchSize(fetchSize);
+      fetchSizeApplied = true;
+    } else if (fetchSizeApplied) {
+      // Restore the original fetch size after a different SQL
+      super.setFetchSize(originalFetchSize);
+      fetchSizeApplied = false;
+    }
+    return true;
+  }
+
+  /**
+   * The objects obtained through this statement, each tracked by the connection with these children as its parent.
+   */
+  private final TrackedChildren children = new TrackedChildren();
 
   @Override
-  @SuppressWarnings("ReturnOfCollectionOrArrayField") // No defensive copy
   public final Map<ResultSet, ResultSetTrackerImpl> getTrackedResultSets() {
-    return trackedResultSets;
+    return connectionTracker.getTrackedChildren(TrackedType.RESULT_SET, children);
   }
 
   @Override
   protected ResultSetTrackerImpl wrapResultSet(ResultSet results) throws SQLException {
-    return ConnectionTrackerImpl.getIfAbsent(trackedResultSets, results,
+    return ConnectionTrackerImpl.adopt(children, results,
         () -> (ResultSetTrackerImpl) super.wrapResultSet(results),
-        ResultSetTrackerImpl::getWrapped
+        ResultSetTrackerImpl::setParent
     );
   }
 
+  @Override
+  public boolean execute(String sql) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.execute(sql);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.execute(sql, autoGeneratedKeys);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.execute(sql, columnIndexes);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public boolean execute(String sql, String[] columnNames) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.execute(sql, columnNames);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public ResultSetTrackerImpl executeQuery(String sql) throws SQLException {
+    boolean adaptive = adaptFetchSize(sql);
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      ResultSetTrackerImpl results = (ResultSetTrackerImpl) super.executeQuery(sql);
+      if (results != null) {
+        results.setQuery(maxRows);
+        if (adaptive) {
+          results.setAdaptive();
+        }
+      }
+      return results;
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeUpdate(sql);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeUpdate(sql, autoGeneratedKeys);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeUpdate(sql, columnIndexes);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeUpdate(sql, columnNames);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeLargeUpdate(sql);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeLargeUpdate(sql, autoGeneratedKeys);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeLargeUpdate(sql, columnIndexes);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+    this.sql = sql;
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, sql);
+    try {
+      return super.executeLargeUpdate(sql, columnNames);
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public int[] executeBatch() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, null);
+    try {
+      return super.executeBatch();
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public long[] executeLargeBatch() throws SQLException {
+    Execution execution = Execution.begin(connectionTracker, TrackedType.STATEMENT, this, null);
+    try {
+      return super.executeLargeBatch();
+    } finally {
+      Execution.end(execution);
+    }
+  }
+
+  @Override
+  public ResultSetTrackerImpl getResultSet() throws SQLException {
+    ResultSetTrackerImpl results = (ResultSetTrackerImpl) super.getResultSet();
+    if (results != null) {
+      results.setQuery(maxRows);
+    }
+    return results;
+  }
+
+  @Override
+  public void setMaxRows(int max) throws SQLException {
+    super.setMaxRows(max);
+    maxRows = max;
+  }
+
+  @Override
+  public void setLargeMaxRows(long max) throws SQLException {
+    super.setLargeMaxRows(max);
+    maxRows = max;
+  }
+
+  @Override
+  public void setFetchSize(int rows) throws SQLException {
+    fetchSizeSet = true;
+    super.setFetchSize(rows);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -103,12 +405,12 @@ public class StatementTrackerImpl extends StatementWrapperImpl
   @Override
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
   public void close() throws SQLException {
-    Throwable t0 = ConnectionTrackerImpl.clearRunAndCatch(onCloseHandlers);
+    Throwable t0 = untrack();
     // Close tracked objects
-    t0 = ConnectionTrackerImpl.clearCloseAndCatch(t0,
-        // Statement
-        trackedResultSets
-    );
+    if (!children.isEmpty()) {
+      // Statement
+      t0 = AutoCloseables.closeAndCatch(t0, connectionTracker.drainChildren(TrackedType.RESULT_SET, children));
+    }
     try {
       super.close();
     } catch (Throwable t) {
@@ -0,0 +1,95 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the system properties that set defaults.  These are read in static initializers, where an exception would
+ * fail class initialization and then every use of the class, including every connection through the driver.  An
+ * invalid value is therefore logged at level {@link Level#WARNING} and replaced by the default.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class SystemProperties {
+
+  /** Make no instances. */
+  private SystemProperties() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Gets a non-negative integer system property.
+   *
+   * @param  logger  The logger of the class reading the property
+   *
+   * @return  The value or {@code def} when not set, not a number, or negative
+   */
+  static int getNonNegativeInt(Logger logger, String property, int def) {
+    String value = System.getProperty(property);
+    if (value != null) {
+      try {
+        int i = Integer.decode(value);
+        if (i >= 0) {
+          return i;
+        }
+      } catch (NumberFormatException e) {
+        // Logged below
+      }
+      invalid(logger, property, value, def);
+    }
+    return def;
+  }
+
+  /**
+   * Gets a non-negative long integer system property.
+   *
+   * @param  logger  The logger of the class reading the property
+   *
+   * @return  The value or {@code def} when not set, not a number, or negative
+   */
+  static long getNonNegativeLong(Logger logger, String property, long def) {
+    String value = System.getProperty(property);
+    if (value != null) {
+      try {
+        long l = Long.decode(value);
+        if (l >= 0) {
+          return l;
+        }
+      } catch (NumberFormatException e) {
+        // Logged below
+      }
+      invalid(logger, property, value, def);
+    }
+    return def;
+  }
+
+  /**
+   * Logs an invalid value of a system property.
+   */
+  static void invalid(Logger logger, String property, String value, Object def) {
+    logger.log(Level.WARNING, "Invalid value of system property " + property + ", using " + def + ": " + value);
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The children of a tracked object, such as the result sets of a statement.  Each child is tracked by its connection,
+ * and points to the children of the object it was obtained through as its parent.  The children also keep their own
+ * small mapping of each child, so the children of an object are found without searching its connection.
+ *
+ * <p>Counts the children not yet closed, so an object without any children does not need to search even its own
+ * children when closed.</p>
+ *
+ * <p>Most objects have at most one child at a time, such as a statement and its current result set.  The only child
+ * is kept in an inline slot, and a map is only created when a second child is added while the first is still
+ * open.</p>
+ *
+ * <p>Extends {@link AtomicInteger} instead of wrapping one to avoid an additional object per tracker.</p>
+ *
+ * @author  AO Industries, Inc.
+ *
+ * @see  ConnectionTrackerImpl#adopt(com.aoapps.sql.tracker.TrackedChildren, java.lang.Object, com.aoapps.lang.concurrent.CallableE, java.util.function.BiConsumer)
+ * @see  ConnectionTrackerImpl#getTrackedChildren(com.aoapps.sql.tracker.TrackedType, com.aoapps.sql.tracker.TrackedChildren)
+ * @see  ConnectionTrackerImpl#drainChildren(com.aoapps.sql.tracker.TrackedType, com.aoapps.sql.tracker.TrackedChildren)
+ */
+final class TrackedChildren extends AtomicInteger {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The expected number of children once more than one, which is typically two.
+   */
+  private static final int EXPECTED_CHILDREN = 2;
+
+  /**
+   * The wrapped object of the only child or {@code null} when none or once {@link #trackers} created.
+   */
+  private transient Object singleWrapped; // Guarded by this
+
+  /**
+   * The tracker of the only child or {@code null} when none or once {@link #trackers} created.
+   */
+  private transient Object singleTracker; // Guarded by this
+
+  /**
+   * The mapping from each wrapped child to its tracker, created on second child.
+   */
+  private transient Map<Object, Object> trackers; // Guarded by this
+
+  /**
+   * The views of the children by {@link TrackedType#ordinal()}, created on first use.
+   */
+  private transient Map<?, ?>[] views; // Guarded by this
+
+  TrackedChildren() {
+    // Do nothing
+  }
+
+  /**
+   * Called when a child has this as its parent.
+   */
+  void added(Object wrapped, Object tracker) {
+    synchronized (this) {
+      if (trackers != null) {
+        trackers.put(wrapped, tracker);
+      } else if (singleWrapped == null || singleWrapped == wrapped) {
+        singleWrapped = wrapped;
+        singleTracker = tracker;
+      } else {
+        // Second child
+        trackers = new IdentityHashMap<>(EXPECTED_CHILDREN);
+        trackers.put(singleWrapped, singleTracker);
+        trackers.put(wrapped, tracker);
+        singleWrapped = null;
+        singleTracker = null;
+      }
+    }
+    incrementAndGet();
+  }
+
+  /**
+   * Called once when a child with this as its parent is closed.
+   */
+  void removed(Object wrapped, Object tracker) {
+    remove(wrapped, tracker);
+    decrementAndGet();
+  }
+
+  /**
+   * Checks if has no children that have not yet been closed.
+   */
+  boolean isEmpty() {
+    return get() <= 0;
+  }
+
+  /**
+   * Checks if the given tracker is a child.
+   */
+  synchronized boolean contains(Object wrapped, Object tracker) {
+    if (trackers != null) {
+      return trackers.get(wrapped) == tracker;
+    } else {
+      return singleWrapped == wrapped && singleTracker == tracker;
+    }
+  }
+
+  /**
+   * Removes a child without counting it as closed, which is counted when the child is closed.
+   *
+   * @return  {@code true} when the tracker was a child and has been removed
+   */
+  synchronized boolean remove(Object wrapped, Object tracker) {
+    if (trackers != null) {
+      if (trackers.get(wrapped) == tracker) {
+        trackers.remove(wrapped);
+        return true;
+      }
+    } else if (singleWrapped == wrapped && singleTracker == tracker) {
+      singleWrapped = null;
+      singleTracker = null;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gets a copy of the children.
+   *
+   * @return  The mappings from each wrapped child to its tracker or an empty, unmodifiable list when none.
+   */
+  synchronized List<Map.Entry<Object, Object>> snapshot() {
+    if (trackers == null) {
+      return (singleWrapped == null)
+          ? Collections.emptyList()
+          : Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(singleWrapped, singleTracker));
+    }
+    if (trackers.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Map.Entry<Object, Object>> entries = new ArrayList<>(trackers.size());
+    for (Map.Entry<Object, Object> entry : trackers.entrySet()) {
+      entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+    }
+    return entries;
+  }
+
+  /**
+   * Removes all children tracked in the given map of their connection, also removing them from the map.  Children not
+   * in the map, which are of another type or already no longer tracked by the connection, are not removed.
+   *
+   * @param  tracked  The map of the connection for a single type
+   *
+   * @return  The trackers removed or an empty, unmodifiable list when nothing removed.
+   */
+  @SuppressWarnings("unchecked")
+  <V> List<V> drain(Map<?, V> tracked) {
+    if (isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<V> values = null;
+    synchronized (this) {
+      if (trackers == null) {
+        if (singleWrapped != null && tracked.remove(singleWrapped, singleTracker)) {
+          V value = (V) singleTracker;
+          singleWrapped = null;
+          singleTracker = null;
+          return Collections.singletonList(value);
+        }
+      } else {
+        Iterator<Map.Entry<Object, Object>> iter = trackers.entrySet().iterator();
+        while (iter.hasNext()) {
+          Map.Entry<Object, Object> entry = iter.next();
+          Object value = entry.getValue();
+          if (tracked.remove(entry.getKey(), value)) {
+            iter.remove();
+            if (values == null) {
+              values = new ArrayList<>();
+            }
+            values.add((V) value);
+          }
+        }
+      }
+    }
+    return (values == null) ? Collections.emptyList() : values;
+  }
+
+  /**
+   * Gets the view of the children of a given type, creating it on first use.
+   */
+  @SuppressWarnings("unchecked")
+  synchronized <K, V> Map<K, V> getView(TrackedMaps trackedMaps, TrackedType type) {
+    if (views == null) {
+      views = new Map<?, ?>[TrackedType.COUNT];
+    }
+    int index = type.ordinal();
+    Map<?, ?> view = views[index];
+    if (view == null) {
+      view = new TrackedChildrenMap<>(trackedMaps, type, this);
+      views[index] = view;
+    }
+    return (Map<K, V>) view;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A view of the children of a tracked object of a single type.  The children of the object are searched, each
+ * confirmed to still be tracked by the connection as this type, so the cost is proportional to the number of
+ * children, not to the number of objects tracked by the connection.
+ *
+ * <p>Mappings may be removed, which stops tracking them by the connection, but not added.  Iteration is weakly
+ * consistent and never throws {@link java.util.ConcurrentModificationException}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class TrackedChildrenMap<K, V> extends AbstractMap<K, V> implements DrainableMap<K, V> {
+
+  private final TrackedMaps trackedMaps;
+  private final TrackedType type;
+  private final TrackedChildren parent;
+
+  TrackedChildrenMap(TrackedMaps trackedMaps, TrackedType type, TrackedChildren parent) {
+    this.trackedMaps = trackedMaps;
+    this.type = type;
+    this.parent = parent;
+  }
+
+  /**
+   * Gets the map of the connection.
+   *
+   * @return  The map or {@code null} when there are no children or the connection has never tracked this type
+   */
+  private Map<K, V> tracked() {
+    return parent.isEmpty() ? null : trackedMaps.getIfPresent(type);
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Iterator<Map.Entry<K, V>> iter = entrySet.iterator(); iter.hasNext(); iter.next()) {
+      size++;
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return !entrySet.iterator().hasNext();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public V get(Object key) {
+    Map<K, V> tracked = tracked();
+    if (tracked == null) {
+      return null;
+    }
+    V value = tracked.get(key);
+    return (value != null && parent.contains(key, value)) ? value : null;
+  }
+
+  @Override
+  public V remove(Object key) {
+    V value = get(key);
+    return (value != null && remove(key, value)) ? value : null;
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    Map<K, V> tracked = tracked();
+    if (tracked != null && parent.contains(key, value) && tracked.remove(key, value)) {
+      parent.remove(key, value);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public V replace(K key, V value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void clear() {
+    drain();
+  }
+
+  @Override
+  public List<V> drain() {
+    Map<K, V> tracked = tracked();
+    return (tracked == null) ? Collections.emptyList() : parent.drain(tracked);
+  }
+
+  private final Set<Map.Entry<K, V>> entrySet = new AbstractSet<>() {
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      Map<K, V> tracked = tracked();
+      if (tracked == null) {
+        return Collections.emptyIterator();
+      }
+      Iterator<Map.Entry<Object, Object>> iter = parent.snapshot().iterator();
+      return new Iterator<>() {
+        private Map.Entry<K, V> next;
+        private Map.Entry<K, V> last;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+          while (next == null && iter.hasNext()) {
+            Map.Entry<Object, Object> entry = iter.next();
+            if (tracked.get(entry.getKey()) == entry.getValue()) {
+              next = (Map.Entry<K, V>) (Map.Entry<?, ?>) entry;
+            }
+          }
+          return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          last = next;
+          next = null;
+          return last;
+        }
+
+        @Override
+        public void remove() {
+          if (last == null) {
+            throw new IllegalStateException();
+          }
+          TrackedChildrenMap.this.remove(last.getKey(), last.getValue());
+          last = null;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return TrackedChildrenMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return TrackedChildrenMap.this.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+      TrackedChildrenMap.this.clear();
+    }
+  };
+
+  @Override
+  @SuppressWarnings("ReturnOfCollectionOrArrayField") // Is a view
+  public Set<Map.Entry<K, V>> entrySet() {
+    return entrySet;
+  }
+}
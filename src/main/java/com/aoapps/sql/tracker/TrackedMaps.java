@@ -0,0 +1,188 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import static java.util.Collections.synchronizedMap;
+
+import com.aoapps.collections.IdentityKey;
+import com.aoapps.collections.transformers.FunctionalTransformer;
+import com.aoapps.collections.transformers.TransformMap;
+import com.aoapps.collections.transformers.Transformer;
+import java.sql.Savepoint;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The per-type maps of tracked objects, indexed by {@link TrackedType}.  Each map is only created on first use, so
+ * types never used cost only an empty array slot.
+ *
+ * <p>Extends {@link AtomicReferenceArray} instead of wrapping one to avoid an additional object per tracker.</p>
+ *
+ * <p>Counts the tracked objects of each type, except {@linkplain Savepoint savepoints}, as they are added and removed.
+ * This allows checking for any tracked objects with a single read.</p>
+ *
+ * <p>When {@linkplain #countOpenCallSites() enabled}, also counts the tracked objects per
+ * {@linkplain AllocationCallSite call site}, without referencing the objects.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class TrackedMaps extends AtomicReferenceArray<Map<?, ?>> {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The number of tracked objects per type, indexed by {@link TrackedType#ordinal()}, followed by the total of all
+   * types at index {@link TrackedType#COUNT}.  {@linkplain Savepoint Savepoints} are not counted.
+   */
+  private final AtomicIntegerArray counts = new AtomicIntegerArray(TrackedType.COUNT + 1);
+
+  /**
+   * The number of tracked objects per {@linkplain AllocationCallSite#getInterned() interned} call site or {@code null}
+   * when not counted.  Call sites without tracked objects are removed.
+   */
+  private volatile ConcurrentMap<AllocationCallSite, Integer> openCallSites;
+
+  TrackedMaps() {
+    super(TrackedType.COUNT);
+  }
+
+  private void sizeChanged(int index, Object value, int delta) {
+    counts.addAndGet(index, delta);
+    counts.addAndGet(TrackedType.COUNT, delta);
+    ConcurrentMap<AllocationCallSite, Integer> sites = openCallSites;
+    if (sites != null) {
+      sites.merge(
+          ((AllocationStacktraceProvider) value).getAllocationCallSite().getInterned(),
+          delta,
+          (count, d) -> {
+            int sum = count + d;
+            return (sum == 0) ? null : sum;
+          }
+      );
+    }
+  }
+
+  /**
+   * Starts counting the tracked objects per call site, called before any objects are tracked.  The counts do not
+   * reference the tracked objects, so may be held after the connection has become unreachable.
+   *
+   * @return  The number of tracked objects per call site, except {@linkplain Savepoint savepoints}
+   */
+  ConcurrentMap<AllocationCallSite, Integer> countOpenCallSites() {
+    ConcurrentMap<AllocationCallSite, Integer> sites = new ConcurrentHashMap<>();
+    openCallSites = sites;
+    return sites;
+  }
+
+  /**
+   * Creates a new, empty map for the given type.
+   * {@link Savepoint savepoints} maintain ordering with {@link LinkedHashMap} while using {@link IdentityKey} as a
+   * key wrapper.  All other types are tracked by identity in a {@link ConcurrentIdentityMap}, which is counted.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<?, ?> newMap(TrackedType type) {
+    if (type == TrackedType.SAVEPOINT) {
+      return synchronizedMap(
+          TransformMap.of(
+              new LinkedHashMap<>(),
+              new FunctionalTransformer<>(
+                  Savepoint.class,
+                      /*(Class<IdentityKey<Savepoint>>)*/(Class) IdentityKey.class,
+                  IdentityKey::of,
+                  IdentityKey::getValue
+              ),
+              Transformer.identity()
+          )
+      );
+    } else {
+      int index = type.ordinal();
+      return new ConcurrentIdentityMap<>((value, delta) -> sizeChanged(index, value, delta));
+    }
+  }
+
+  /**
+   * Gets the map for the given type, creating it on first use.
+   */
+  @SuppressWarnings("unchecked")
+  <K, V> Map<K, V> get(TrackedType type) {
+    int index = type.ordinal();
+    Map<?, ?> map = get(index);
+    if (map == null) {
+      Map<?, ?> newMap = newMap(type);
+      if (compareAndSet(index, null, newMap)) {
+        map = newMap;
+      } else {
+        map = get(index);
+      }
+    }
+    return (Map<K, V>) map;
+  }
+
+  /**
+   * Gets the map for the given type or {@code null} when the type has not yet been used.
+   */
+  @SuppressWarnings("unchecked")
+  <K, V> Map<K, V> getIfPresent(TrackedType type) {
+    return (Map<K, V>) get(type.ordinal());
+  }
+
+  /**
+   * Gets the number of tracked objects of the given type.  Not counted for {@linkplain Savepoint savepoints}.
+   */
+  int getCount(TrackedType type) {
+    assert type != TrackedType.SAVEPOINT : "savepoints are not counted";
+    return counts.get(type.ordinal());
+  }
+
+  /**
+   * Gets the number of tracked objects of all types, except {@linkplain Savepoint savepoints}.
+   */
+  int getCount() {
+    return counts.get(TrackedType.COUNT);
+  }
+
+  /**
+   * Clears all maps that have been created.  When no counted objects are tracked, only clears any savepoints.
+   */
+  void clearAll() {
+    if (getCount() == 0) {
+      // Short-cut nothing counted, only savepoints to clear
+      Map<?, ?> savepoints = get(TrackedType.SAVEPOINT.ordinal());
+      if (savepoints != null) {
+        savepoints.clear();
+      }
+      return;
+    }
+    for (int i = 0; i < TrackedType.COUNT; i++) {
+      Map<?, ?> map = get(i);
+      if (map != null) {
+        map.clear();
+      }
+    }
+  }
+}
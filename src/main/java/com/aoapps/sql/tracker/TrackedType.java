@@ -0,0 +1,137 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+/**
+ * The types of objects tracked by drivers, connections, and the objects they create.
+ *
+ * @see  ConnectionTrackerImpl#getTrackedCount(com.aoapps.sql.tracker.TrackedType)
+ *
+ * @author  AO Industries, Inc.
+ */
+public enum TrackedType {
+
+  /**
+   * Tracks {@link java.sql.Array}.
+   */
+  ARRAY,
+  /**
+   * Tracks {@link java.sql.Blob}.
+   */
+  BLOB,
+  /**
+   * Tracks {@link java.sql.CallableStatement}.
+   */
+  CALLABLE_STATEMENT,
+  /**
+   * Tracks {@link java.sql.Clob}.
+   */
+  CLOB,
+  /**
+   * Tracks {@link java.sql.Connection}, tracked by drivers.  Connections do not track connections, so
+   * {@link ConnectionTrackerImpl#getTrackedCount(com.aoapps.sql.tracker.TrackedType)} is always zero for this type.
+   */
+  CONNECTION,
+  /**
+   * Tracks {@link java.sql.DatabaseMetaData}.
+   */
+  DATABASE_META_DATA,
+  /**
+   * Tracks {@link java.io.InputStream}.
+   */
+  INPUT_STREAM,
+  /**
+   * Tracks {@link java.sql.NClob}.
+   */
+  NCLOB,
+  /**
+   * Tracks {@link java.io.OutputStream}.
+   */
+  OUTPUT_STREAM,
+  /**
+   * Tracks {@link java.sql.ParameterMetaData}.
+   */
+  PARAMETER_META_DATA,
+  /**
+   * Tracks {@link java.sql.PreparedStatement}.
+   */
+  PREPARED_STATEMENT,
+  /**
+   * Tracks {@link java.io.Reader}.
+   */
+  READER,
+  /**
+   * Tracks {@link java.sql.Ref}.
+   */
+  REF,
+  /**
+   * Tracks {@link java.sql.ResultSet}.
+   */
+  RESULT_SET,
+  /**
+   * Tracks {@link java.sql.ResultSetMetaData}.
+   */
+  RESULT_SET_META_DATA,
+  /**
+   * Tracks {@link java.sql.RowId}.
+   */
+  ROW_ID,
+  /**
+   * Tracks {@link java.sql.SQLData}.
+   */
+  SQL_DATA,
+  /**
+   * Tracks {@link java.sql.SQLInput}.
+   */
+  SQL_INPUT,
+  /**
+   * Tracks {@link java.sql.SQLOutput}.
+   */
+  SQL_OUTPUT,
+  /**
+   * Tracks {@link java.sql.SQLXML}.
+   */
+  SQLXML,
+  /**
+   * Tracks {@link java.sql.Savepoint}.
+   */
+  SAVEPOINT,
+  /**
+   * Tracks {@link java.sql.Statement}.
+   */
+  STATEMENT,
+  /**
+   * Tracks {@link java.sql.Struct}.
+   */
+  STRUCT,
+  /**
+   * Tracks {@link java.io.Writer}.
+   */
+  WRITER;
+
+  /**
+   * The number of tracked types, without the defensive copy of {@link TrackedType#values()}.
+   */
+  static final int COUNT = values().length;
+}
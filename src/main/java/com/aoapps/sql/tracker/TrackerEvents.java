@@ -0,0 +1,147 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits Java Flight Recorder events, when the {@code jdk.jfr} module is available.  Otherwise, every method does
+ * nothing.
+ *
+ * <p>Duration events are started by a {@code begin} method returning an event, or {@code null} when the event type is
+ * not enabled, that is then passed to the corresponding {@code end} method.</p>
+ *
+ * @see  JfrTrackerEvents
+ *
+ * @author  AO Industries, Inc.
+ */
+interface TrackerEvents {
+
+  /**
+   * The events of this JVM, loaded reflectively so that this package does not require {@code jdk.jfr}.
+   */
+  TrackerEvents INSTANCE = Loader.load();
+
+  /**
+   * Loads {@link JfrTrackerEvents} when available.
+   */
+  final class Loader {
+
+    /** Make no instances. */
+    private Loader() {
+      throw new AssertionError();
+    }
+
+    @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+    private static TrackerEvents load() {
+      try {
+        Class.forName("jdk.jfr.Event");
+      } catch (ClassNotFoundException | LinkageError e) {
+        // Flight Recorder not available
+        return new TrackerEvents() {};
+      }
+      try {
+        return (TrackerEvents) Class.forName(TrackerEvents.class.getPackageName() + ".JfrTrackerEvents")
+            .getDeclaredConstructor().newInstance();
+      } catch (Throwable t) {
+        Logger.getLogger(TrackerEvents.class.getName()).log(Level.WARNING, "Unable to load Flight Recorder events", t);
+        return new TrackerEvents() {};
+      }
+    }
+  }
+
+  /**
+   * A tracked object has been created.
+   */
+  default void opened(TrackedType type, int callSite) {
+    // Do nothing
+  }
+
+  /**
+   * A tracked object has been closed, once per object.
+   *
+   * @param  allocationTime  The time allocated, from {@link System#nanoTime()}
+   */
+  default void closed(TrackedType type, int callSite, long allocationTime) {
+    // Do nothing
+  }
+
+  /**
+   * A tracked object is being closed by its connection or driver.
+   */
+  default void forceClosed(TrackedType type, int callSite) {
+    // Do nothing
+  }
+
+  /**
+   * Begins a connection closing its tracked objects when closed.
+   */
+  default Object sweepBegin() {
+    return null;
+  }
+
+  /**
+   * Ends a connection closing its tracked objects when closed.
+   *
+   * @param  count  The number of tracked objects closed
+   */
+  default void sweepEnd(Object event, int count) {
+    // Do nothing
+  }
+
+  /**
+   * Begins a statement execution.
+   */
+  default Object executeBegin() {
+    return null;
+  }
+
+  /**
+   * Ends a statement execution.
+   *
+   * @param  sql  The SQL when provided to the execute method, or {@code null}
+   */
+  default void executeEnd(Object event, TrackedType type, String sql) {
+    // Do nothing
+  }
+
+  /**
+   * Begins a savepoint being released or rolled back to.
+   */
+  default Object savepointBegin() {
+    return null;
+  }
+
+  /**
+   * Ends a savepoint being released or rolled back to.
+   *
+   * @param  operation  The operation, such as {@code "releaseSavepoint"} or {@code "rollback"}
+   * @param  released   The number of tracked savepoints released
+   */
+  default void savepointEnd(Object event, String operation, int released) {
+    // Do nothing
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.sql.Statement;
+import java.util.ServiceLoader;
+
+/**
+ * Listens to the objects being tracked and the statements being executed.  Every method does nothing by default.
+ *
+ * <p>Listeners are registered in three ways:</p>
+ * <ol>
+ *   <li>For the entire JVM, as a {@linkplain ServiceLoader service provider}, loaded once when first needed</li>
+ *   <li>Per driver, by {@link DriverTracker#addListener(com.aoapps.sql.tracker.TrackerListener)}</li>
+ *   <li>Per connection, by {@link ConnectionTrackerImpl#addListener(com.aoapps.sql.tracker.TrackerListener)}</li>
+ * </ol>
+ *
+ * <p>A connection with no listeners checks a single field per event, so there is no cost beyond this check.</p>
+ *
+ * <p>Listeners are called on the thread using the JDBC object and must be thread-safe.  An exception thrown by a
+ * listener is logged and does not interrupt other listeners or the JDBC call.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public interface TrackerListener {
+
+  /**
+   * A tracked object has been created.  Called at the end of the constructor of the tracker.
+   *
+   * @param  type     The type of tracked object
+   * @param  tracker  The new tracker, such as {@link StatementTrackerImpl}
+   */
+  default void opened(TrackedType type, Object tracker) {
+    // Do nothing
+  }
+
+  /**
+   * A tracked object has been closed or freed.  Called once per object, including those force-closed.
+   *
+   * @param  type     The type of tracked object
+   * @param  tracker  The tracker being closed
+   */
+  default void closed(TrackedType type, Object tracker) {
+    // Do nothing
+  }
+
+  /**
+   * A tracked object, still open, is being closed by its connection on close or by its driver on deregister.
+   * Called before the object is closed.
+   *
+   * <p>Not called for {@linkplain DriverTracker#setCleanAbandoned(boolean) abandoned connections}, since their tracker
+   * no longer exists.</p>
+   *
+   * @param  type     The type of tracked object
+   * @param  tracker  The tracker being force-closed
+   */
+  default void forceClosed(TrackedType type, Object tracker) {
+    // Do nothing
+  }
+
+  /**
+   * A statement is about to execute.
+   *
+   * @param  type       The type of statement
+   * @param  statement  The statement tracker
+   * @param  sql        The SQL when provided to the execute method, otherwise the SQL a prepared or callable statement
+   *                     was prepared with, or {@code null} when neither
+   */
+  default void executeBegin(TrackedType type, Statement statement, String sql) {
+    // Do nothing
+  }
+
+  /**
+   * A statement has executed, whether successfully or not.
+   *
+   * @param  type       The type of statement
+   * @param  statement  The statement tracker
+   * @param  sql        The SQL when provided to the execute method, otherwise the SQL a prepared or callable statement
+   *                     was prepared with, or {@code null} when neither
+   * @param  nanos      The time spent executing, in nanoseconds
+   */
+  default void executeEnd(TrackedType type, Statement statement, String sql, long nanos) {
+    // Do nothing
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A set of registered {@link TrackerListener}, copied on write so that it may be read without locking.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class TrackerListeners {
+
+  private static final Logger logger = Logger.getLogger(TrackerListeners.class.getName());
+
+  private static final TrackerListener[] EMPTY = {};
+
+  /**
+   * The listeners registered as service providers.
+   */
+  private static final TrackerListener[] services = loadServices();
+
+  private static TrackerListener[] loadServices() {
+    List<TrackerListener> loaded = new ArrayList<>();
+    Iterator<TrackerListener> iter = ServiceLoader.load(TrackerListener.class).iterator();
+    while (true) {
+      try {
+        if (!iter.hasNext()) {
+          break;
+        }
+        loaded.add(iter.next());
+      } catch (ServiceConfigurationError e) {
+        logger.log(Level.WARNING, "Unable to load tracker listener", e);
+      }
+    }
+    return loaded.isEmpty() ? EMPTY : loaded.toArray(new TrackerListener[loaded.size()]);
+  }
+
+  private volatile TrackerListener[] listeners = EMPTY;
+
+  /**
+   * Adds a listener when not already registered.
+   *
+   * @return  {@code true} when added
+   */
+  synchronized boolean add(TrackerListener listener) {
+    TrackerListener[] current = listeners;
+    for (TrackerListener existing : current) {
+      if (existing == listener) {
+        return false;
+      }
+    }
+    TrackerListener[] newListeners = Arrays.copyOf(current, current.length + 1);
+    newListeners[current.length] = listener;
+    listeners = newListeners;
+    return true;
+  }
+
+  /**
+   * Removes a listener.
+   *
+   * @return  {@code true} when removed
+   */
+  synchronized boolean remove(TrackerListener listener) {
+    TrackerListener[] current = listeners;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i] == listener) {
+        TrackerListener[] newListeners = new TrackerListener[current.length - 1];
+        System.arraycopy(current, 0, newListeners, 0, i);
+        System.arraycopy(current, i + 1, newListeners, i, newListeners.length - i);
+        listeners = newListeners;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Combines the service providers with the listeners of each of the given sets, in order.
+   *
+   * @param  sets  The sets of listeners, any of which may be {@code null}
+   *
+   * @return  The combined listener or {@code null} when there are no listeners
+   */
+  static TrackerListener combine(TrackerListeners ... sets) {
+    List<TrackerListener> combined = new ArrayList<>(Arrays.asList(services));
+    for (TrackerListeners set : sets) {
+      if (set != null) {
+        combined.addAll(Arrays.asList(set.listeners));
+      }
+    }
+    return combined.isEmpty() ? null : new Multicaster(combined.toArray(new TrackerListener[combined.size()]));
+  }
+
+  /**
+   * Calls each listener in turn, logging any exception.  The only implementation given to trackers, so the call sites
+   * remain monomorphic.
+   */
+  private static final class Multicaster implements TrackerListener {
+
+    private final TrackerListener[] listeners;
+
+    private Multicaster(TrackerListener[] listeners) {
+      this.listeners = listeners;
+    }
+
+    @Override
+    public void opened(TrackedType type, Object tracker) {
+      for (TrackerListener listener : listeners) {
+        try {
+          listener.opened(type, tracker);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "Tracker listener failed", e);
+        }
+      }
+    }
+
+    @Override
+    public void closed(TrackedType type, Object tracker) {
+      for (TrackerListener listener : listeners) {
+        try {
+          listener.closed(type, tracker);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "Tracker listener failed", e);
+        }
+      }
+    }
+
+    @Override
+    public void forceClosed(TrackedType type, Object tracker) {
+      for (TrackerListener listener : listeners) {
+        try {
+          listener.forceClosed(type, tracker);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "Tracker listener failed", e);
+        }
+      }
+    }
+
+    @Override
+    public void executeBegin(TrackedType type, Statement statement, String sql) {
+      for (TrackerListener listener : listeners) {
+        try {
+          listener.executeBegin(type, statement, sql);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "Tracker listener failed", e);
+        }
+      }
+    }
+
+    @Override
+    public void executeEnd(TrackedType type, Statement statement, String sql, long nanos) {
+      for (TrackerListener listener : listeners) {
+        try {
+          listener.executeEnd(type, statement, sql, nanos);
+        } catch (RuntimeException e) {
+          logger.log(Level.WARNING, "Tracker listener failed", e);
+        }
+      }
+    }
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
- * Copyright (C) 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,6 +23,7 @@
 module com.aoapps.sql.tracker {
   exports com.aoapps.sql.tracker;
   provides java.sql.Driver with com.aoapps.sql.tracker.Driver;
+  uses com.aoapps.sql.tracker.TrackerListener;
   // Direct
   requires com.aoapps.collections; // <groupId>com.aoapps</groupId><artifactId>ao-collections</artifactId>
   requires com.aoapps.collections.transformers; // <groupId>com.aoapps</groupId><artifactId>ao-collections-transformers</artifactId>
@@ -30,5 +31,8 @@ module com.aoapps.sql.tracker {
   requires com.aoapps.sql.wrapper; // <groupId>com.aoapps</groupId><artifactId>ao-sql-wrapper</artifactId>
   // Java SE
   requires java.logging;
+  requires java.management;
   requires java.sql;
+  // JDK
+  requires static jdk.jfr; // Optional: Flight Recorder events
 }
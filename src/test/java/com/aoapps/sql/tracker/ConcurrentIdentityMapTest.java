@@ -0,0 +1,222 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests {@link ConcurrentIdentityMap}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class ConcurrentIdentityMapTest {
+
+  @Test
+  @SuppressWarnings("RedundantStringConstructorCall")
+  public void testComparesByIdentity() {
+    ConcurrentIdentityMap<String, String> map = new ConcurrentIdentityMap<>();
+    String key1 = new String("key");
+    String key2 = new String("key");
+    assertNull(map.put(key1, "value1"));
+    assertNull(map.put(key2, "value2"));
+    assertEquals(2, map.size());
+    assertEquals("value1", map.get(key1));
+    assertEquals("value2", map.get(key2));
+    assertNull(map.get("key"));
+    assertFalse(map.containsKey("key"));
+    assertFalse(map.remove(key1, "value2"));
+    assertTrue(map.remove(key1, "value1"));
+    assertFalse(map.containsKey(key1));
+    assertTrue(map.containsKey(key2));
+  }
+
+  @Test
+  public void testNullsNotFound() {
+    ConcurrentIdentityMap<Object, Object> map = new ConcurrentIdentityMap<>();
+    assertNull(map.get(null));
+    assertFalse(map.containsKey(null));
+    assertNull(map.remove(null));
+    assertFalse(map.remove(null, "value"));
+    assertFalse(map.containsValue(null));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testPutNullKey() {
+    new ConcurrentIdentityMap<Object, Object>().put(null, "value");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testPutIfAbsentNullKey() {
+    new ConcurrentIdentityMap<Object, Object>().putIfAbsent(null, "value");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testReplaceNullKey() {
+    new ConcurrentIdentityMap<Object, Object>().replace(null, "value");
+  }
+
+  @Test
+  public void testSizeListener() {
+    AtomicInteger size = new AtomicInteger();
+    ConcurrentIdentityMap<Object, String> map = new ConcurrentIdentityMap<>((value, delta) -> size.addAndGet(delta));
+    Object key1 = new Object();
+    Object key2 = new Object();
+    Object key3 = new Object();
+    map.put(key1, "value1");
+    map.put(key1, "value1b");
+    assertEquals("value1b", map.putIfAbsent(key1, "value1c"));
+    assertNull(map.putIfAbsent(key2, "value2"));
+    map.put(key3, "value3");
+    assertEquals(3, size.get());
+    assertEquals("value1b", map.replace(key1, "value1d"));
+    assertTrue(map.replace(key2, "value2", "value2b"));
+    assertEquals(3, size.get());
+    assertEquals("value3", map.remove(key3));
+    assertNull(map.remove(key3));
+    assertEquals(2, size.get());
+    map.clear();
+    assertEquals(0, size.get());
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testComputeIfAbsent() {
+    AtomicInteger size = new AtomicInteger();
+    ConcurrentIdentityMap<Object, String> map = new ConcurrentIdentityMap<>((value, delta) -> size.addAndGet(delta));
+    Object key = new Object();
+    assertEquals("value", map.computeIfAbsent(key, k -> "value"));
+    assertEquals("value", map.computeIfAbsent(key, k -> {
+      throw new AssertionError("Not called when present");
+    }));
+    assertNull(map.computeIfAbsent(new Object(), k -> null));
+    assertEquals(1, size.get());
+  }
+
+  @Test
+  public void testDrain() {
+    AtomicInteger size = new AtomicInteger();
+    ConcurrentIdentityMap<Object, Integer> map = new ConcurrentIdentityMap<>((value, delta) -> size.addAndGet(delta));
+    assertSame(Collections.emptyList(), map.drain());
+    for (int i = 0; i < 100; i++) {
+      map.put(new Object(), i);
+    }
+    List<Integer> drained = new ArrayList<>(map.drain());
+    Collections.sort(drained);
+    assertEquals(100, drained.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, (int) drained.get(i));
+    }
+    assertTrue(map.isEmpty());
+    assertEquals(0, size.get());
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    AtomicInteger size = new AtomicInteger();
+    ConcurrentIdentityMap<Object, Integer> map = new ConcurrentIdentityMap<>((value, delta) -> size.addAndGet(delta));
+    Map<Object, Integer> expected = new IdentityHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      Object key = new Object();
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    Set<Map.Entry<Object, Integer>> entries = map.entrySet();
+    assertEquals(10, entries.size());
+    for (Iterator<Map.Entry<Object, Integer>> iter = entries.iterator(); iter.hasNext(); ) {
+      Map.Entry<Object, Integer> entry = iter.next();
+      assertEquals(expected.remove(entry.getKey()), entry.getValue());
+      if (entry.getValue() % 2 == 0) {
+        iter.remove();
+      }
+    }
+    assertTrue(expected.isEmpty());
+    assertEquals(5, map.size());
+    assertEquals(5, size.get());
+    assertEquals(5, map.snapshot().size());
+  }
+
+  /**
+   * Each value is drained or removed by exactly one thread, while other threads are adding.
+   */
+  @Test
+  public void testConcurrentRemoveAndDrain() throws InterruptedException {
+    final int threads = 8;
+    final int perThread = 10000;
+    AtomicInteger size = new AtomicInteger();
+    ConcurrentIdentityMap<Object, Object> map = new ConcurrentIdentityMap<>((value, delta) -> size.addAndGet(delta));
+    AtomicInteger removed = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>(threads);
+    List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    for (int t = 0; t < threads; t++) {
+      boolean drainer = (t % 2) == 0;
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < perThread; i++) {
+            Object key = new Object();
+            Object value = new Object();
+            map.put(key, value);
+            if (drainer) {
+              if (i % 100 == 0) {
+                removed.addAndGet(map.drain().size());
+              }
+            } else if (map.remove(key, value)) {
+              removed.incrementAndGet();
+            }
+          }
+        } catch (Throwable e) {
+          failures.add(e);
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertTrue(failures.toString(), failures.isEmpty());
+    removed.addAndGet(map.drain().size());
+    assertEquals(threads * perThread, removed.get());
+    assertEquals(0, size.get());
+    assertTrue(map.isEmpty());
+  }
+}
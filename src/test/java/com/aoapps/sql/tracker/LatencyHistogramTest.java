@@ -0,0 +1,152 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests {@link LatencyHistogram} and its use by {@link SqlLatencies}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testSmallValuesExact() {
+    for (int value = 0; value < LatencyHistogram.SUB_BUCKETS; value++) {
+      assertEquals(value, LatencyHistogram.getIndex(value));
+      assertEquals(value, LatencyHistogram.getHighestValue(value));
+    }
+  }
+
+  @Test
+  public void testBucketsContiguous() {
+    assertEquals(LatencyHistogram.SUB_BUCKETS - 1, LatencyHistogram.getHighestValue(LatencyHistogram.SUB_BUCKETS - 1));
+    for (int index = 1; index < LatencyHistogram.BUCKETS; index++) {
+      long lowest = LatencyHistogram.getHighestValue(index - 1) + 1;
+      long highest = LatencyHistogram.getHighestValue(index);
+      assertTrue("index " + index, highest >= lowest);
+      assertEquals("lowest of index " + index, index, LatencyHistogram.getIndex(lowest));
+      assertEquals("highest of index " + index, index, LatencyHistogram.getIndex(highest));
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.getHighestValue(LatencyHistogram.BUCKETS - 1));
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.getIndex(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPowerOfTwoBoundaries() {
+    for (int exponent = 3; exponent < Long.SIZE - 1; exponent++) {
+      long power = 1L << exponent;
+      assertEquals("2^" + exponent, LatencyHistogram.getIndex(power - 1) + 1, LatencyHistogram.getIndex(power));
+      // Within 12.5%
+      long highest = LatencyHistogram.getHighestValue(LatencyHistogram.getIndex(power));
+      assertTrue("2^" + exponent, highest - power <= power / LatencyHistogram.SUB_BUCKETS);
+    }
+  }
+
+  @Test
+  public void testSnapshot() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(100);
+    histogram.record(1000);
+    histogram.record(1000);
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(4, snapshot.getCount());
+    assertEquals(2100, snapshot.getTotalTime());
+    assertEquals(1000, snapshot.getMaxTime());
+    assertEquals(0, snapshot.getPercentile(0));
+    assertEquals(LatencyHistogram.getHighestValue(LatencyHistogram.getIndex(100)), snapshot.getP50());
+    // Not more than the longest duration
+    assertEquals(1000, snapshot.getPercentile(100));
+  }
+
+  @Test
+  public void testSnapshotAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(10);
+    assertEquals(1, histogram.getSnapshotAndReset().getCount());
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getMaxTime());
+    assertEquals(0, snapshot.getP99());
+  }
+
+  @Test
+  public void testRetire() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertTrue(histogram.recordIfActive(10));
+    assertTrue(histogram.retire());
+    assertFalse(histogram.recordIfActive(10));
+    assertEquals(1, histogram.getSnapshot().getCount());
+  }
+
+  @Test
+  public void testResetRemovesUnused() {
+    SqlLatencies latencies = new SqlLatencies();
+    latencies.record("SELECT 1", 10);
+    Map<String, LatencyHistogram.Snapshot> snapshots = latencies.getSnapshotsAndReset();
+    assertEquals(1, snapshots.get("SELECT 1").getCount());
+    assertEquals(1, latencies.size());
+    assertTrue(latencies.getSnapshotsAndReset().isEmpty());
+    assertEquals(0, latencies.size());
+    latencies.record("SELECT 1", 10);
+    assertEquals(1, latencies.get("SELECT 1").getSnapshot().getCount());
+  }
+
+  @Test
+  public void testRecordAfterRetired() {
+    SqlLatencies latencies = new SqlLatencies();
+    latencies.record("SELECT 1", 10);
+    LatencyHistogram retired = latencies.get("SELECT 1");
+    // Retired, but not yet removed, by a concurrent reset
+    assertTrue(retired.retire());
+    latencies.record("SELECT 1", 20);
+    LatencyHistogram current = latencies.get("SELECT 1");
+    assertNotSame(retired, current);
+    assertEquals(1, current.getSnapshot().getCount());
+    assertEquals(20, current.getSnapshot().getTotalTime());
+  }
+
+  @Test
+  public void testEviction() {
+    SqlLatencies latencies = new SqlLatencies(10);
+    for (int i = 0; i < 11; i++) {
+      latencies.record("SELECT " + i, i);
+    }
+    assertEquals(9, latencies.size());
+    assertEquals(2, latencies.getEvictionCount());
+    // Recorded again after eviction
+    for (int i = 0; i < 11; i++) {
+      latencies.record("SELECT " + i, i);
+    }
+    assertEquals(latencies.size(), latencies.getSnapshotsAndReset().size());
+  }
+}
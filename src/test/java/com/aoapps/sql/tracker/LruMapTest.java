@@ -0,0 +1,98 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests {@link LruMap}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class LruMapTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxSizeZero() {
+    new LruMap<String, String>(0);
+  }
+
+  @Test
+  public void testComputeIfAbsent() {
+    LruMap<String, String> map = new LruMap<>(10);
+    assertEquals("A", map.computeIfAbsent("a", String::toUpperCase));
+    assertEquals("A", map.computeIfAbsent("a", k -> "other"));
+    assertEquals("A", map.putIfAbsent("a", "other"));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    LruMap<Integer, Integer> map = new LruMap<>(10);
+    for (int i = 0; i < 10; i++) {
+      map.putIfAbsent(i, i);
+    }
+    // Evicts down to 90%, all used in the same epoch
+    map.putIfAbsent(10, 10);
+    assertEquals(9, map.size());
+    // Used in the following epoch
+    int used = map.asMap().keySet().iterator().next();
+    assertEquals(used, (int) map.get(used));
+    map.putIfAbsent(100, 100);
+    map.putIfAbsent(101, 101);
+    assertEquals(9, map.size());
+    assertEquals(used, (int) map.get(used));
+    assertEquals(100, (int) map.get(100));
+    assertEquals(101, (int) map.get(101));
+  }
+
+  @Test
+  public void testView() {
+    LruMap<String, String> map = new LruMap<>(10);
+    map.putIfAbsent("a", "A");
+    map.putIfAbsent("b", "B");
+    Map<String, String> view = map.asMap();
+    assertEquals(2, view.size());
+    assertEquals("A", view.get("a"));
+    assertNull(view.get("c"));
+    assertTrue(view.containsKey("b"));
+    int count = 0;
+    for (Map.Entry<String, String> entry : view.entrySet()) {
+      assertEquals(entry.getKey().toUpperCase(), entry.getValue());
+      count++;
+    }
+    assertEquals(2, count);
+    map.clear();
+    assertTrue(view.isEmpty());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testViewUnmodifiable() {
+    new LruMap<String, String>(10).asMap().put("a", "A");
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link NPlusOneDetector}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class NPlusOneDetectorTest {
+
+  private final Logger logger = Logger.getLogger(NPlusOneDetector.class.getName());
+
+  private final List<LogRecord> logged = new ArrayList<>();
+
+  private final Handler handler = new Handler() {
+    @Override
+    public void publish(LogRecord logRecord) {
+      logged.add(logRecord);
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close
+    }
+  };
+
+  private boolean useParentHandlers;
+  private int threshold;
+  private boolean connectionScope;
+
+  @Before
+  public void setUp() {
+    threshold = NPlusOneDetector.getThreshold();
+    connectionScope = NPlusOneDetector.isConnectionScope();
+    useParentHandlers = logger.getUseParentHandlers();
+    logger.setUseParentHandlers(false);
+    logger.addHandler(handler);
+  }
+
+  @After
+  public void tearDown() {
+    logger.removeHandler(handler);
+    logger.setUseParentHandlers(useParentHandlers);
+    NPlusOneDetector.setThreshold(threshold);
+    NPlusOneDetector.setConnectionScope(connectionScope);
+  }
+
+  @Test
+  public void testNormalizeLiterals() {
+    assertEquals(
+        "SELECT * FROM person WHERE id = ? AND name = ?",
+        NPlusOneDetector.normalize("SELECT * FROM person WHERE id = 42 AND name = 'O''Brien'")
+    );
+    assertEquals("SELECT ? + ?", NPlusOneDetector.normalize("SELECT 1.5 + 2e10"));
+  }
+
+  @Test
+  public void testNormalizeIdentifiers() {
+    assertEquals("SELECT col1 FROM t2", NPlusOneDetector.normalize("SELECT col1 FROM t2"));
+    assertEquals("SELECT \"col 1\" FROM t", NPlusOneDetector.normalize("SELECT \"col 1\" FROM t"));
+  }
+
+  @Test
+  public void testNormalizeWhitespace() {
+    assertEquals("SELECT a FROM t", NPlusOneDetector.normalize("  SELECT\ta\n\n FROM   t  "));
+  }
+
+  @Test
+  public void testNormalizeParameterLists() {
+    assertEquals("SELECT a FROM t WHERE id IN (?)", NPlusOneDetector.normalize("SELECT a FROM t WHERE id IN (1, 2, 3)"));
+    assertEquals("SELECT a FROM t WHERE id IN (?)", NPlusOneDetector.normalize("SELECT a FROM t WHERE id IN (?,?)"));
+    assertEquals("INSERT INTO t VALUES (?)", NPlusOneDetector.normalize("INSERT INTO t VALUES (?, 'x', 3)"));
+  }
+
+  @Test
+  public void testScopeReportsPastThreshold() {
+    NPlusOneDetector.Scope scope = new NPlusOneDetector.Scope("transaction");
+    for (int i = 0; i < 3; i++) {
+      scope.executed("SELECT ?", 2);
+    }
+    scope.executed("SELECT a", 2);
+    scope.report();
+    assertEquals(1, logged.size());
+    assertEquals("Executed 3 times in one transaction: SELECT ?", logged.get(0).getMessage());
+    assertNotNull(logged.get(0).getThrown());
+  }
+
+  private static ConnectionTrackerImpl newConnectionTracker() {
+    Connection connection = (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    return new ConnectionTrackerImpl(connection);
+  }
+
+  @Test
+  public void testConnectionScopeDisabledByDefault() {
+    NPlusOneDetector.setThreshold(1);
+    NPlusOneDetector.setConnectionScope(false);
+    ConnectionTrackerImpl connectionTracker = newConnectionTracker();
+    connectionTracker.countExecution("SELECT 1");
+    connectionTracker.countExecution("SELECT 2");
+    connectionTracker.reportExecutions();
+    assertEquals(0, logged.size());
+  }
+
+  @Test
+  public void testConnectionScopeReportAndReset() {
+    NPlusOneDetector.setThreshold(1);
+    NPlusOneDetector.setConnectionScope(true);
+    ConnectionTrackerImpl connectionTracker = newConnectionTracker();
+    connectionTracker.countExecution("SELECT 1");
+    connectionTracker.countExecution("SELECT 2");
+    connectionTracker.reportExecutions();
+    assertEquals(1, logged.size());
+    assertEquals("Executed 2 times in one connection: SELECT ?", logged.get(0).getMessage());
+    // Reset by report, such as on the next checkout from a pool
+    connectionTracker.countExecution("SELECT 3");
+    connectionTracker.reportExecutions();
+    assertEquals(1, logged.size());
+  }
+}
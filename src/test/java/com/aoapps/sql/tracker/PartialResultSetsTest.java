@@ -0,0 +1,60 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PartialResultSets}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class PartialResultSetsTest {
+
+  @Test
+  public void testSingleRow() {
+    assertTrue(PartialResultSets.isSingleRow("SELECT a FROM t WHERE b = ? LIMIT 1"));
+    assertTrue(PartialResultSets.isSingleRow("select a from t limit 1 offset 10"));
+    assertTrue(PartialResultSets.isSingleRow("SELECT a FROM t FETCH FIRST ROW ONLY"));
+    assertTrue(PartialResultSets.isSingleRow("SELECT a FROM t OFFSET 5 ROWS FETCH NEXT 1 ROWS ONLY"));
+    assertTrue(PartialResultSets.isSingleRow("SELECT TOP 1 a FROM t"));
+    assertTrue(PartialResultSets.isSingleRow("SELECT TOP (1) a FROM t"));
+  }
+
+  @Test
+  public void testNotSingleRow() {
+    assertFalse(PartialResultSets.isSingleRow("SELECT a FROM t"));
+    assertFalse(PartialResultSets.isSingleRow("SELECT a FROM t LIMIT 10"));
+    assertFalse(PartialResultSets.isSingleRow("SELECT a FROM t LIMIT 1.5"));
+    // MySQL offset, count
+    assertFalse(PartialResultSets.isSingleRow("SELECT a FROM t LIMIT 1, 10"));
+    assertFalse(PartialResultSets.isSingleRow("SELECT a FROM t LIMIT ?"));
+    assertFalse(PartialResultSets.isSingleRow("SELECT a FROM t FETCH FIRST 10 ROWS ONLY"));
+    assertFalse(PartialResultSets.isSingleRow("SELECT TOP 100 a FROM t"));
+    assertFalse(PartialResultSets.isSingleRow("SELECT unlimit1 FROM t"));
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests {@link StatementCache}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class StatementCacheTest {
+
+  /**
+   * The calls made to each statement, by method name.
+   */
+  private final List<String> calls = new ArrayList<>();
+
+  private PreparedStatement newStatement(String name, boolean closed, boolean failReset) {
+    return (PreparedStatement) Proxy.newProxyInstance(
+        PreparedStatement.class.getClassLoader(),
+        new Class<?>[] {PreparedStatement.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "isClosed":
+              return closed;
+            case "clearParameters":
+              if (failReset) {
+                throw new SQLException("reset failed");
+              }
+              return null;
+            default:
+              calls.add(name + "." + method.getName());
+              return null;
+          }
+        }
+    );
+  }
+
+  private PreparedStatement newStatement(String name) {
+    return newStatement(name, false, false);
+  }
+
+  private static StatementCache.Key key(String sql) {
+    int unspecified = StatementCache.Key.UNSPECIFIED;
+    return new StatementCache.Key(false, sql, unspecified, unspecified, unspecified, unspecified, null, null);
+  }
+
+  @Test
+  public void testKeyEquality() {
+    assertEquals(key("SELECT 1"), key("SELECT 1"));
+    assertEquals(key("SELECT 1").hashCode(), key("SELECT 1").hashCode());
+    assertFalse(key("SELECT 1").equals(key("SELECT 2")));
+    int unspecified = StatementCache.Key.UNSPECIFIED;
+    assertFalse(key("SELECT 1").equals(
+        new StatementCache.Key(true, "SELECT 1", unspecified, unspecified, unspecified, unspecified, null, null)));
+  }
+
+  @Test
+  public void testTakeAndRelease() {
+    StatementCache cache = new StatementCache(null, 2);
+    assertNull(cache.take(key("A")));
+    PreparedStatement a = newStatement("A");
+    assertNull(cache.release(null, key("A"), a));
+    assertSame(a, cache.take(key("A")));
+    // Removed while in use
+    assertNull(cache.take(key("A")));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertTrue(calls.contains("A.clearBatch"));
+    assertFalse(calls.contains("A.close"));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    StatementCache cache = new StatementCache(null, 2);
+    PreparedStatement a = newStatement("A");
+    cache.release(null, key("A"), a);
+    cache.release(null, key("B"), newStatement("B"));
+    // A used more recently than B
+    cache.release(null, key("A"), cache.take(key("A")));
+    cache.release(null, key("C"), newStatement("C"));
+    assertEquals(1, cache.getEvictionCount());
+    assertTrue(calls.contains("B.close"));
+    assertNull(cache.take(key("B")));
+    assertSame(a, cache.take(key("A")));
+    assertNotNull(cache.take(key("C")));
+  }
+
+  @Test
+  public void testSetMaxSizeEvicts() {
+    StatementCache cache = new StatementCache(null, 2);
+    cache.release(null, key("A"), newStatement("A"));
+    cache.release(null, key("B"), newStatement("B"));
+    assertNull(cache.setMaxSize(null, 0));
+    assertTrue(calls.contains("A.close"));
+    assertTrue(calls.contains("B.close"));
+    assertEquals(2, cache.getEvictionCount());
+    // Disabled
+    PreparedStatement c = newStatement("C");
+    cache.release(null, key("C"), c);
+    assertTrue(calls.contains("C.close"));
+  }
+
+  @Test
+  public void testDuplicateClosed() {
+    StatementCache cache = new StatementCache(null, 2);
+    PreparedStatement a1 = newStatement("A1");
+    cache.release(null, key("A"), a1);
+    cache.release(null, key("A"), newStatement("A2"));
+    assertTrue(calls.contains("A2.close"));
+    assertSame(a1, cache.take(key("A")));
+  }
+
+  @Test
+  public void testClosedNotCached() {
+    StatementCache cache = new StatementCache(null, 2);
+    cache.release(null, key("A"), newStatement("A", true, false));
+    assertFalse(calls.contains("A.close"));
+    assertFalse(calls.contains("A.clearBatch"));
+    assertNull(cache.take(key("A")));
+  }
+
+  @Test
+  public void testResetFailureClosed() {
+    StatementCache cache = new StatementCache(null, 2);
+    Throwable t = cache.release(null, key("A"), newStatement("A", false, true));
+    assertNotNull(t);
+    assertEquals("reset failed", t.getMessage());
+    assertTrue(calls.contains("A.close"));
+    assertNull(cache.take(key("A")));
+  }
+
+  @Test
+  public void testCloseClosesAll() {
+    StatementCache cache = new StatementCache(null, 2);
+    cache.release(null, key("A"), newStatement("A"));
+    assertNull(cache.close(null));
+    assertTrue(calls.contains("A.close"));
+    // Released after closed
+    cache.release(null, key("B"), newStatement("B"));
+    assertTrue(calls.contains("B.close"));
+    assertNull(cache.take(key("B")));
+  }
+
+  @Test
+  public void testDirtyStatementNotCached() throws SQLException {
+    Connection connection = (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "prepareStatement":
+              return newStatement((String) args[0]);
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        }
+    );
+    ConnectionTrackerImpl connectionTracker = new ConnectionTrackerImpl(connection);
+    connectionTracker.setStatementCacheSize(2);
+    connectionTracker.prepareStatement("CLEAN").close();
+    PreparedStatement dirty = connectionTracker.prepareStatement("DIRTY");
+    dirty.setMaxRows(1);
+    dirty.close();
+    assertFalse(calls.contains("CLEAN.close"));
+    assertTrue(calls.contains("DIRTY.close"));
+    connectionTracker.prepareStatement("CLEAN").close();
+    connectionTracker.prepareStatement("DIRTY").close();
+    assertEquals(1, connectionTracker.getStatementCacheHitCount());
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests {@link TrackedChildren} and its views by {@link TrackedChildrenMap}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class TrackedChildrenTest {
+
+  /**
+   * Tracks a child by the connection and by its parent.
+   */
+  private static Object track(TrackedMaps trackedMaps, TrackedType type, TrackedChildren parent, Object wrapped) {
+    Object tracker = "tracker of " + wrapped;
+    trackedMaps.get(type).put(wrapped, tracker);
+    parent.added(wrapped, tracker);
+    return tracker;
+  }
+
+  @Test
+  public void testViewOnlyIncludesOwnChildrenOfType() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    TrackedChildren other = new TrackedChildren();
+    Object resultSet = new Object();
+    Object resultSetTracker = track(trackedMaps, TrackedType.RESULT_SET, parent, resultSet);
+    track(trackedMaps, TrackedType.RESULT_SET, other, new Object());
+    Object metaData = new Object();
+    track(trackedMaps, TrackedType.RESULT_SET_META_DATA, parent, metaData);
+    Map<Object, Object> resultSets = parent.getView(trackedMaps, TrackedType.RESULT_SET);
+    assertSame(resultSets, parent.getView(trackedMaps, TrackedType.RESULT_SET));
+    assertEquals(1, resultSets.size());
+    assertSame(resultSetTracker, resultSets.get(resultSet));
+    assertNull(resultSets.get(metaData));
+    assertEquals(1, parent.<Object, Object>getView(trackedMaps, TrackedType.RESULT_SET_META_DATA).size());
+    assertTrue(parent.<Object, Object>getView(trackedMaps, TrackedType.BLOB).isEmpty());
+    assertEquals(2, parent.get());
+  }
+
+  @Test
+  public void testDrainOnlyRemovesType() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    TrackedChildren other = new TrackedChildren();
+    Object resultSet1 = new Object();
+    Object resultSet2 = new Object();
+    Object resultSetTracker1 = track(trackedMaps, TrackedType.RESULT_SET, parent, resultSet1);
+    Object resultSetTracker2 = track(trackedMaps, TrackedType.RESULT_SET, parent, resultSet2);
+    Object otherResultSet = new Object();
+    track(trackedMaps, TrackedType.RESULT_SET, other, otherResultSet);
+    Object metaData = new Object();
+    track(trackedMaps, TrackedType.RESULT_SET_META_DATA, parent, metaData);
+    List<Object> drained = parent.drain(trackedMaps.getIfPresent(TrackedType.RESULT_SET));
+    assertEquals(2, drained.size());
+    assertTrue(drained.contains(resultSetTracker1));
+    assertTrue(drained.contains(resultSetTracker2));
+    // Drained children are no longer tracked by the connection
+    assertEquals(1, trackedMaps.getCount(TrackedType.RESULT_SET));
+    assertTrue(trackedMaps.getIfPresent(TrackedType.RESULT_SET).containsKey(otherResultSet));
+    assertEquals(1, trackedMaps.getCount(TrackedType.RESULT_SET_META_DATA));
+    assertTrue(parent.<Object, Object>getView(trackedMaps, TrackedType.RESULT_SET).isEmpty());
+    // Children are only counted as removed once closed
+    assertEquals(3, parent.get());
+    parent.removed(resultSet1, resultSetTracker1);
+    parent.removed(resultSet2, resultSetTracker2);
+    assertEquals(1, parent.get());
+    assertFalse(parent.isEmpty());
+  }
+
+  @Test
+  public void testChildClosedByItself() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    Object blob = new Object();
+    Object blobTracker = track(trackedMaps, TrackedType.BLOB, parent, blob);
+    // As done by the child on close
+    trackedMaps.getIfPresent(TrackedType.BLOB).remove(blob, blobTracker);
+    parent.removed(blob, blobTracker);
+    assertTrue(parent.isEmpty());
+    assertFalse(parent.contains(blob, blobTracker));
+    assertSame(Collections.emptyList(), parent.drain(trackedMaps.getIfPresent(TrackedType.BLOB)));
+  }
+
+  @Test
+  public void testViewRemove() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    Object clob = new Object();
+    Object clobTracker = track(trackedMaps, TrackedType.CLOB, parent, clob);
+    Map<Object, Object> clobs = parent.getView(trackedMaps, TrackedType.CLOB);
+    assertNull(clobs.remove(new Object()));
+    assertSame(clobTracker, clobs.remove(clob));
+    assertTrue(clobs.isEmpty());
+    assertEquals(0, trackedMaps.getCount(TrackedType.CLOB));
+    assertFalse(parent.contains(clob, clobTracker));
+  }
+
+  @Test
+  public void testChildNoLongerTrackedByConnection() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    Object array = new Object();
+    track(trackedMaps, TrackedType.ARRAY, parent, array);
+    // As done when the connection closes all tracked objects
+    trackedMaps.clearAll();
+    assertTrue(parent.<Object, Object>getView(trackedMaps, TrackedType.ARRAY).isEmpty());
+    assertTrue(parent.drain(trackedMaps.getIfPresent(TrackedType.ARRAY)).isEmpty());
+  }
+
+  @Test
+  public void testSingleChildThenSecond() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    // First child, in the inline slot
+    Object resultSet1 = new Object();
+    Object resultSetTracker1 = track(trackedMaps, TrackedType.RESULT_SET, parent, resultSet1);
+    assertTrue(parent.contains(resultSet1, resultSetTracker1));
+    assertEquals(1, parent.snapshot().size());
+    // Second child while the first is open
+    Object resultSet2 = new Object();
+    Object resultSetTracker2 = track(trackedMaps, TrackedType.RESULT_SET, parent, resultSet2);
+    assertTrue(parent.contains(resultSet1, resultSetTracker1));
+    assertTrue(parent.contains(resultSet2, resultSetTracker2));
+    assertEquals(2, parent.snapshot().size());
+    // Close the first
+    trackedMaps.getIfPresent(TrackedType.RESULT_SET).remove(resultSet1, resultSetTracker1);
+    parent.removed(resultSet1, resultSetTracker1);
+    assertFalse(parent.contains(resultSet1, resultSetTracker1));
+    assertEquals(Collections.singletonList(resultSetTracker2), parent.drain(trackedMaps.getIfPresent(TrackedType.RESULT_SET)));
+    assertTrue(parent.snapshot().isEmpty());
+  }
+
+  @Test
+  public void testSingleChildReplaced() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    TrackedChildren parent = new TrackedChildren();
+    Object resultSet = new Object();
+    Object resultSetTracker1 = track(trackedMaps, TrackedType.RESULT_SET, parent, resultSet);
+    // Closed by itself, then wrapped again by a new tracker
+    trackedMaps.getIfPresent(TrackedType.RESULT_SET).remove(resultSet, resultSetTracker1);
+    parent.removed(resultSet, resultSetTracker1);
+    Object resultSetTracker2 = "new tracker";
+    trackedMaps.get(TrackedType.RESULT_SET).put(resultSet, resultSetTracker2);
+    parent.added(resultSet, resultSetTracker2);
+    assertFalse(parent.contains(resultSet, resultSetTracker1));
+    assertTrue(parent.contains(resultSet, resultSetTracker2));
+    // A stale removal does not remove the new tracker
+    assertFalse(parent.remove(resultSet, resultSetTracker1));
+    assertEquals(Collections.singletonList(resultSetTracker2), parent.drain(trackedMaps.getIfPresent(TrackedType.RESULT_SET)));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * ao-sql-tracker - Tracks JDBC API for unclosed or unfreed objects.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of ao-sql-tracker.
+ *
+ * ao-sql-tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ao-sql-tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ao-sql-tracker.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.aoapps.sql.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.sql.Savepoint;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests {@link TrackedMaps}.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class TrackedMapsTest {
+
+  @Test
+  public void testNoMapsUntilUsed() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    for (TrackedType type : TrackedType.values()) {
+      assertNull(type.name(), trackedMaps.getIfPresent(type));
+    }
+    assertEquals(0, trackedMaps.getCount());
+  }
+
+  @Test
+  public void testGetCreatesOnlyThatType() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    Map<Object, Object> resultSets = trackedMaps.get(TrackedType.RESULT_SET);
+    assertNotNull(resultSets);
+    assertSame(resultSets, trackedMaps.get(TrackedType.RESULT_SET));
+    assertSame(resultSets, trackedMaps.getIfPresent(TrackedType.RESULT_SET));
+    for (TrackedType type : TrackedType.values()) {
+      if (type != TrackedType.RESULT_SET) {
+        assertNull(type.name(), trackedMaps.getIfPresent(type));
+      }
+    }
+  }
+
+  @Test
+  public void testCounts() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    Map<Object, Object> statements = trackedMaps.get(TrackedType.PREPARED_STATEMENT);
+    Map<Object, Object> resultSets = trackedMaps.get(TrackedType.RESULT_SET);
+    Object statement = new Object();
+    Object resultSet1 = new Object();
+    Object resultSet2 = new Object();
+    statements.put(statement, "statement");
+    resultSets.put(resultSet1, "resultSet1");
+    resultSets.put(resultSet2, "resultSet2");
+    // Replacing a value does not change the count
+    resultSets.put(resultSet2, "resultSet2b");
+    assertEquals(1, trackedMaps.getCount(TrackedType.PREPARED_STATEMENT));
+    assertEquals(2, trackedMaps.getCount(TrackedType.RESULT_SET));
+    assertEquals(0, trackedMaps.getCount(TrackedType.BLOB));
+    assertEquals(3, trackedMaps.getCount());
+    resultSets.remove(resultSet1);
+    // Removing a mapping not present does not change the count
+    resultSets.remove(resultSet1);
+    assertEquals(1, trackedMaps.getCount(TrackedType.RESULT_SET));
+    assertEquals(2, trackedMaps.getCount());
+    trackedMaps.clearAll();
+    assertEquals(0, trackedMaps.getCount(TrackedType.PREPARED_STATEMENT));
+    assertEquals(0, trackedMaps.getCount(TrackedType.RESULT_SET));
+    assertEquals(0, trackedMaps.getCount());
+    assertEquals(0, statements.size());
+    assertEquals(0, resultSets.size());
+  }
+
+  @Test
+  public void testSavepointsNotCounted() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    Map<Savepoint, Object> savepoints = trackedMaps.get(TrackedType.SAVEPOINT);
+    Savepoint savepoint = (Savepoint) Proxy.newProxyInstance(
+        Savepoint.class.getClassLoader(),
+        new Class<?>[] {Savepoint.class},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    savepoints.put(savepoint, "savepoint");
+    assertEquals(1, savepoints.size());
+    assertEquals(0, trackedMaps.getCount());
+    // Savepoints are still cleared, even when nothing counted
+    trackedMaps.clearAll();
+    assertEquals(0, savepoints.size());
+  }
+
+  private static AllocationStacktraceProvider newProvider(AllocationCallSite site) {
+    return (AllocationStacktraceProvider) Proxy.newProxyInstance(
+        AllocationStacktraceProvider.class.getClassLoader(),
+        new Class<?>[] {AllocationStacktraceProvider.class},
+        (proxy, method, args) -> {
+          if ("getAllocationCallSite".equals(method.getName())) {
+            return site;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }
+    );
+  }
+
+  @Test
+  public void testCountOpenCallSites() {
+    TrackedMaps trackedMaps = new TrackedMaps();
+    Map<AllocationCallSite, Integer> openCallSites = trackedMaps.countOpenCallSites();
+    StackTraceElement[] noStackTrace = new StackTraceElement[0];
+    AllocationCallSite statementSite = new AllocationCallSite(0, TrackedType.PREPARED_STATEMENT, noStackTrace);
+    AllocationCallSite resultSetSite = new AllocationCallSite(1, TrackedType.RESULT_SET, noStackTrace);
+    // A call site beyond the bound is counted with the call site of its type
+    AllocationCallSite notInterned = new AllocationCallSite(resultSetSite, noStackTrace);
+    Map<Object, Object> statements = trackedMaps.get(TrackedType.PREPARED_STATEMENT);
+    Map<Object, Object> resultSets = trackedMaps.get(TrackedType.RESULT_SET);
+    Object resultSet1 = new Object();
+    statements.put(new Object(), newProvider(statementSite));
+    resultSets.put(resultSet1, newProvider(resultSetSite));
+    resultSets.put(new Object(), newProvider(notInterned));
+    assertEquals(Integer.valueOf(1), openCallSites.get(statementSite));
+    assertEquals(Integer.valueOf(2), openCallSites.get(resultSetSite));
+    resultSets.remove(resultSet1);
+    assertEquals(Integer.valueOf(1), openCallSites.get(resultSetSite));
+    // Call sites without tracked objects are removed
+    trackedMaps.clearAll();
+    assertEquals(0, openCallSites.size());
+  }
+}